@@ -0,0 +1,320 @@
+package com.hihelloy.work;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A long running task that is split into small steps and resumed every tick.<br><br>
+ *
+ * Each tick the scheduler calls {@link #step()} repeatedly until it returns
+ * {@link Step#YIELD} or {@link Step#DONE}, or until the per-tick time budget
+ * is used up. The remaining work carries over to the next tick, so world
+ * scans, flood fills and mass migrations no longer have to be hand-split into
+ * state machines or block a whole tick.<br><br>
+ *
+ * Tasks can run in the same contexts as {@link PaperRunnable}: global, region,
+ * entity and async.
+ */
+public abstract class IncrementalTask {
+
+    /**
+     * The result of a single {@link #step()}.
+     */
+    public enum Step {
+        /** More work is left, call again this tick if the budget allows. */
+        CONTINUE,
+        /** More work is left, but stop for this tick. */
+        YIELD,
+        /** The task is finished. */
+        DONE
+    }
+
+    public enum State {
+        IDLE,
+        RUNNING,
+        PAUSED,
+        DONE,
+        CANCELLED
+    }
+
+    private static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private volatile State state = State.IDLE;
+    private volatile long budgetNanos = DEFAULT_BUDGET_NANOS;
+    private volatile long stepsCompleted;
+
+    private volatile PaperRunnable driver;
+    private final AtomicBoolean stepping = new AtomicBoolean();
+    private Plugin plugin;
+    private SchedulerType schedulerType;
+    private Location location;
+    private Entity entity;
+
+    /**
+     * Performs one small unit of work.
+     * @return Whether there is more work to do and if it may continue this tick.
+     */
+    protected abstract Step step();
+
+    /**
+     * Reports how far along the task is. Override this if the task knows its
+     * total amount of work.
+     * @return A value between 0 and 1, or -1 if the progress is unknown.
+     */
+    protected double progress() {
+        return -1;
+    }
+
+    /**
+     * Called once on the task's thread after {@link #step()} returns {@link Step#DONE}.
+     */
+    protected void onComplete() {
+    }
+
+    /**
+     * Sets how much time {@link #step()} may use per tick. Defaults to 2ms.
+     * @param budget The time budget.
+     * @param unit The unit of {@code budget}.
+     * @return This task.
+     */
+    public IncrementalTask setBudget(long budget, TimeUnit unit) {
+        if (budget <= 0) throw new IllegalArgumentException("budget must be positive");
+        this.budgetNanos = unit.toNanos(budget);
+        return this;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public boolean isPaused() {
+        return state == State.PAUSED;
+    }
+
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    public boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    /**
+     * @return The number of steps that have run so far.
+     */
+    public long getStepsCompleted() {
+        return stepsCompleted;
+    }
+
+    /**
+     * @return A value between 0 and 1, or -1 if the progress is unknown.
+     */
+    public double getProgress() {
+        if (state == State.DONE) return 1;
+        return progress();
+    }
+
+
+    public IncrementalTask runTask(Plugin plugin) {
+        return start(plugin, SchedulerType.GLOBAL, null, null);
+    }
+
+    public IncrementalTask runAtLocation(Plugin plugin, Location loc) {
+        Objects.requireNonNull(loc);
+        return start(plugin, SchedulerType.REGION, loc, null);
+    }
+
+    public IncrementalTask runAtEntity(Plugin plugin, Entity entity) {
+        Objects.requireNonNull(entity);
+        return start(plugin, SchedulerType.ENTITY, null, entity);
+    }
+
+    public IncrementalTask runAsync(Plugin plugin) {
+        return start(plugin, SchedulerType.ASYNC, null, null);
+    }
+
+    /**
+     * Stops the task after the current step. It can be continued with {@link #resume()}.
+     */
+    public synchronized void pause() {
+        if (state != State.RUNNING) return;
+        state = State.PAUSED;
+        stopDriver();
+    }
+
+    /**
+     * Continues a paused task in the context it was started in.
+     */
+    public synchronized void resume() {
+        if (state != State.PAUSED) return;
+        state = State.RUNNING;
+        startDriver();
+    }
+
+    /**
+     * Stops the task for good.
+     */
+    public synchronized void cancel() {
+        if (state == State.DONE || state == State.CANCELLED) return;
+        state = State.CANCELLED;
+        stopDriver();
+    }
+
+
+    private synchronized IncrementalTask start(Plugin plugin, SchedulerType type, Location loc, Entity entity) {
+        Objects.requireNonNull(plugin, "plugin");
+        if (state != State.IDLE) throw new IllegalStateException("This IncrementalTask has already been started!");
+
+        this.plugin = plugin;
+        this.schedulerType = type;
+        this.location = loc;
+        this.entity = entity;
+        this.state = State.RUNNING;
+        startDriver();
+        return this;
+    }
+
+    private void startDriver() {
+        PaperRunnable d = new PaperRunnable() {
+            @Override
+            public void run() {
+                tick(this);
+            }
+        };
+        driver = d;
+
+        switch (schedulerType) {
+            case GLOBAL -> d.runTaskTimer(plugin, 1L, 1L);
+            case REGION -> d.runAtLocationTimer(plugin, location, 1L, 1L);
+            case ENTITY -> d.runAtEntityTimer(plugin, entity, 1L, 1L, this::cancel);
+            case ASYNC -> d.runAsyncTimer(plugin, 1L, 1L);
+        }
+    }
+
+    private void stopDriver() {
+        if (driver != null) {
+            driver.cancel();
+            driver = null;
+        }
+    }
+
+    /**
+     * Runs steps for one tick. A driver that was replaced by {@link #pause()}
+     * and {@link #resume()} stops after its current step, and the new driver
+     * waits for the next tick while the old one is still stepping, so
+     * {@link #step()} is never called concurrently.
+     * @param self The driver calling this.
+     */
+    private void tick(PaperRunnable self) {
+        if (!stepping.compareAndSet(false, true)) return;
+        try {
+            long deadline = System.nanoTime() + budgetNanos;
+
+            while (state == State.RUNNING && driver == self) {
+                Step result;
+                try {
+                    result = step();
+                } catch (Throwable t) {
+                    cancel();
+                    throw t;
+                }
+                stepsCompleted++;
+
+                if (result == Step.DONE) {
+                    finish();
+                    return;
+                }
+                if (result == Step.YIELD || System.nanoTime() >= deadline) return;
+            }
+        } finally {
+            stepping.set(false);
+        }
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (state != State.RUNNING) return;
+            state = State.DONE;
+            stopDriver();
+        }
+        onComplete();
+    }
+
+
+    /**
+     * Creates a task from a step function.
+     * @param step Called for every step.
+     * @return The unscheduled task.
+     */
+    public static IncrementalTask of(Supplier<Step> step) {
+        Objects.requireNonNull(step);
+        return new IncrementalTask() {
+            @Override
+            protected Step step() {
+                return step.get();
+            }
+        };
+    }
+
+    /**
+     * Creates a task where each call to {@link Iterator#next()} is one step.
+     * The task is done once the iterator is exhausted.
+     * @param steps The iterator doing the work.
+     * @return The unscheduled task.
+     */
+    public static IncrementalTask of(Iterator<?> steps) {
+        Objects.requireNonNull(steps);
+        return new IncrementalTask() {
+            @Override
+            protected Step step() {
+                if (!steps.hasNext()) return Step.DONE;
+                steps.next();
+                return steps.hasNext() ? Step.CONTINUE : Step.DONE;
+            }
+        };
+    }
+
+    /**
+     * Creates a task that applies an action to every element of a collection,
+     * one element per step. Progress is reported from the collection size.
+     * @param items The elements to process.
+     * @param action The action to apply to each element.
+     * @return The unscheduled task.
+     */
+    public static <T> IncrementalTask forEach(Collection<? extends T> items, Consumer<? super T> action) {
+        Objects.requireNonNull(items);
+        Objects.requireNonNull(action);
+        Iterator<? extends T> it = items.iterator();
+        int total = items.size();
+        return new IncrementalTask() {
+            @Override
+            protected Step step() {
+                if (!it.hasNext()) return Step.DONE;
+                action.accept(it.next());
+                return it.hasNext() ? Step.CONTINUE : Step.DONE;
+            }
+
+            @Override
+            protected double progress() {
+                return total == 0 ? 1 : (double) getStepsCompleted() / total;
+            }
+        };
+    }
+}
@@ -1,5 +1,8 @@
 package com.hihelloy.work;
 
+import com.hihelloy.work.jfr.TaskEvents;
+import com.hihelloy.work.jfr.TaskExecutionEvent;
+import com.hihelloy.work.util.PhaseSpreader;
 import io.papermc.paper.threadedregions.scheduler.AsyncScheduler;
 import io.papermc.paper.threadedregions.scheduler.EntityScheduler;
 import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
@@ -31,6 +34,13 @@ public abstract class PaperRunnable implements Runnable {
     private ScheduledTask task;
     private final AtomicBoolean running = new AtomicBoolean(false);
 
+    private Plugin owner;
+    private SchedulerType schedulerType;
+    private Object target;
+
+    private boolean spreadPhases;
+    private volatile PhaseSpreader.Slot phaseSlot;
+
     public abstract void run();
 
     public ScheduledTask getScheduledTask() {
@@ -47,7 +57,7 @@ public abstract class PaperRunnable implements Runnable {
 
     public boolean isCancelled() {
         if (isFolia()) {
-            return task.isCancelled();
+            return task == null || task.isCancelled();
         } else {
             BukkitTask bukkitTask = Bukkit.getScheduler().getPendingTasks()
                     .stream()
@@ -71,24 +81,39 @@ public abstract class PaperRunnable implements Runnable {
         return running.get();
     }
 
+    public boolean isSpreadPhases() {
+        return spreadPhases;
+    }
+
+    /**
+     * Enables or disables {@link PhaseSpreader phase spreading} for timers started by this runnable.
+     * @return This runnable.
+     */
+    public PaperRunnable setSpreadPhases(boolean spreadPhases) {
+        this.spreadPhases = spreadPhases;
+        return this;
+    }
+
 
     public static void cancelTask(int taskId) {
         if (taskId <= 0) return;
 
         ScheduledTask f = foliaTasks.remove(taskId);
         if (f != null) {
-            try { f.cancel(); } catch (Throwable ignored) {}
+            if (cancelScheduled(f)) TaskEvents.cancelled(null, f.getOwningPlugin(), null, null, taskId);
             return;
         }
 
-        try { Bukkit.getScheduler().cancelTask(taskId); } catch (Throwable ignored) {}
+        if (cancelBukkitTask(taskId)) TaskEvents.cancelled(null, null, null, null, taskId);
     }
 
 
     public void cancel() {
+        int taskId = currentTaskId();
+        boolean cancelled = false;
 
         if (task != null) {
-            try { task.cancel(); } catch (Throwable ignored) {}
+            cancelled = cancelScheduled(task);
             task = null;
         }
 
@@ -98,11 +123,40 @@ public abstract class PaperRunnable implements Runnable {
         }
 
         if (bukkitTaskId != -1) {
-            try { Bukkit.getScheduler().cancelTask(bukkitTaskId); } catch (Throwable ignored) {}
+            cancelled |= cancelBukkitTask(bukkitTaskId);
             bukkitTaskId = -1;
         }
 
+        releasePhase();
         running.set(false);
+        if (cancelled) TaskEvents.cancelled(this, owner, schedulerType, target, taskId);
+    }
+
+    /**
+     * @return Whether a run of the task was still to come, so the cancel stopped something.
+     */
+    private static boolean cancelScheduled(ScheduledTask scheduled) {
+        try {
+            ScheduledTask.CancelledState state = scheduled.cancel();
+            return state == ScheduledTask.CancelledState.CANCELLED_BY_CALLER
+                    || state == ScheduledTask.CancelledState.NEXT_RUNS_CANCELLED;
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether the task was still queued, so the cancel stopped something.
+     */
+    private static boolean cancelBukkitTask(int taskId) {
+        try {
+            BukkitScheduler scheduler = Bukkit.getScheduler();
+            boolean queued = scheduler.isQueued(taskId);
+            scheduler.cancelTask(taskId);
+            return queued;
+        } catch (Throwable ignored) {
+            return false;
+        }
     }
 
 
@@ -119,6 +173,109 @@ public abstract class PaperRunnable implements Runnable {
         if (running.get()) throw new IllegalStateException("This PaperRunnable is already running!");
     }
 
+    private int currentTaskId() {
+        return foliaTaskId != -1 ? foliaTaskId : bukkitTaskId;
+    }
+
+    private void prepare(Plugin plugin, SchedulerType type, Object target) {
+        this.owner = plugin;
+        this.schedulerType = type;
+        this.target = target;
+    }
+
+    private void scheduled(long delayTicks, long periodTicks) {
+        TaskEvents.scheduled(this, owner, schedulerType, target, currentTaskId(), delayTicks, periodTicks);
+    }
+
+    private long spread(long delayTicks, long periodTicks) {
+        return spreadPhases ? reservePhase(null, delayTicks, periodTicks) : delayTicks;
+    }
+
+    private long spread(Location loc, long delayTicks, long periodTicks) {
+        return spreadPhases ? reservePhase(PhaseSpreader.regionOf(loc), delayTicks, periodTicks) : delayTicks;
+    }
+
+    private long spread(Entity entity, long delayTicks, long periodTicks) {
+        return spreadPhases ? reservePhase(PhaseSpreader.regionOf(entity), delayTicks, periodTicks) : delayTicks;
+    }
+
+    private long reservePhase(Object region, long delayTicks, long periodTicks) {
+        phaseSlot = PhaseSpreader.reserve(region, delayTicks, periodTicks);
+        return phaseSlot == null ? delayTicks : phaseSlot.getDelay();
+    }
+
+    /**
+     * Lets the spreader free this timer's phase if the timer is cancelled
+     * without going through {@link #cancel()}, for example by its plugin
+     * being disabled.
+     */
+    private void bindPhase() {
+        PhaseSpreader.Slot slot = phaseSlot;
+        if (slot == null) return;
+        if (isFolia()) {
+            ScheduledTask scheduled = task;
+            if (scheduled == null) {
+                slot.bind(() -> true);
+            } else {
+                slot.bind(scheduled, ScheduledTask::isCancelled);
+            }
+        } else {
+            int id = bukkitTaskId;
+            slot.bind(() -> !Bukkit.getScheduler().isQueued(id));
+        }
+    }
+
+    private void releasePhase() {
+        PhaseSpreader.Slot slot = phaseSlot;
+        if (slot != null) {
+            phaseSlot = null;
+            slot.release();
+        }
+    }
+
+    private Runnable retiredHook(Runnable retired) {
+        if (phaseSlot == null) return retired;
+        return () -> {
+            releasePhase();
+            retired.run();
+        };
+    }
+
+    private void runTracked() {
+        TaskExecutionEvent event = TaskEvents.beginExecution();
+        try {
+            run();
+        } finally {
+            TaskEvents.endExecution(event, this, owner, schedulerType, target, currentTaskId());
+        }
+    }
+
+    private void runInline() {
+        scheduled(0, -1);
+        running.set(true);
+        try {
+            runTracked();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Wraps this task for the Bukkit scheduler so an entity task behaves like it
+     * does on Folia: once the entity is no longer valid the task stops and
+     * {@code retired} runs instead.
+     */
+    private Runnable entityTask(Entity entity, Runnable retired) {
+        return () -> {
+            if (entity.isValid()) {
+                runTracked();
+                return;
+            }
+            cancel();
+            retired.run();
+        };
+    }
+
     private void assignFoliaTask(ScheduledTask t) {
         this.task = t;
         this.foliaTaskId = foliaIdGen.getAndIncrement();
@@ -129,15 +286,17 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runTask(Plugin plugin) {
         ensureNotRunning();
         Objects.requireNonNull(plugin, "plugin");
+        prepare(plugin, SchedulerType.GLOBAL, null);
 
         if (isFolia()) {
             GlobalRegionScheduler global = Bukkit.getGlobalRegionScheduler();
-            assignFoliaTask(global.run(plugin, scheduled -> run()));
+            assignFoliaTask(global.run(plugin, scheduled -> runTracked()));
         } else {
             BukkitScheduler sched = Bukkit.getScheduler();
-            bukkitTaskId = sched.scheduleSyncDelayedTask(plugin, this);
+            bukkitTaskId = sched.scheduleSyncDelayedTask(plugin, this::runTracked);
         }
 
+        scheduled(0, -1);
         running.set(true);
         return this;
     }
@@ -145,14 +304,16 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runTaskLater(Plugin plugin, long delayTicks) {
         ensureNotRunning();
         Objects.requireNonNull(plugin, "plugin");
+        prepare(plugin, SchedulerType.GLOBAL, null);
 
         if (isFolia()) {
             GlobalRegionScheduler global = Bukkit.getGlobalRegionScheduler();
-            assignFoliaTask(global.runDelayed(plugin, scheduled -> run(), delayTicks));
+            assignFoliaTask(global.runDelayed(plugin, scheduled -> runTracked(), delayTicks));
         } else {
-            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, this, delayTicks);
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, this::runTracked, delayTicks);
         }
 
+        scheduled(delayTicks, -1);
         running.set(true);
         return this;
     }
@@ -160,28 +321,56 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runTaskTimer(Plugin plugin, long delayTicks, long periodTicks) {
         ensureNotRunning();
         Objects.requireNonNull(plugin, "plugin");
+        prepare(plugin, SchedulerType.GLOBAL, null);
+        delayTicks = spread(delayTicks, periodTicks);
 
         if (isFolia()) {
             GlobalRegionScheduler global = Bukkit.getGlobalRegionScheduler();
-            assignFoliaTask(global.runAtFixedRate(plugin, scheduled -> run(), delayTicks, periodTicks));
+            assignFoliaTask(global.runAtFixedRate(plugin, scheduled -> runTracked(), delayTicks, periodTicks));
         } else {
-            bukkitTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this, delayTicks, periodTicks);
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::runTracked, delayTicks, periodTicks);
         }
 
+        bindPhase();
+        scheduled(delayTicks, periodTicks);
         running.set(true);
         return this;
     }
 
 
+    /**
+     * Runs this task at a location, immediately if the current thread already
+     * owns the location's region (the main thread on non-Folia servers) and
+     * otherwise on the next tick through {@link #runAtLocation(Plugin, Location)}.
+     * An inline run has no task ID and is no longer running once this returns.
+     */
+    public PaperRunnable runAtLocationNow(Plugin plugin, Location loc) {
+        ensureNotRunning();
+        Objects.requireNonNull(plugin);
+        Objects.requireNonNull(loc);
+
+        boolean owned = isFolia() ? Bukkit.isOwnedByCurrentRegion(loc) : Bukkit.isPrimaryThread();
+        if (!owned) return runAtLocation(plugin, loc);
+
+        prepare(plugin, SchedulerType.REGION, loc);
+        runInline();
+        return this;
+    }
+
     public PaperRunnable runAtLocation(Plugin plugin, Location loc) {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(loc);
+        prepare(plugin, SchedulerType.REGION, loc);
 
-        if (!isFolia()) throw new IllegalStateException("runAtLocation requires Folia");
+        if (isFolia()) {
+            RegionScheduler region = Bukkit.getRegionScheduler();
+            assignFoliaTask(region.run(plugin, loc, scheduled -> runTracked()));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, this::runTracked);
+        }
 
-        RegionScheduler region = Bukkit.getRegionScheduler();
-        assignFoliaTask(region.run(plugin, loc, scheduled -> run()));
+        scheduled(0, -1);
         running.set(true);
         return this;
     }
@@ -190,11 +379,16 @@ public abstract class PaperRunnable implements Runnable {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(loc);
+        prepare(plugin, SchedulerType.REGION, loc);
 
-        if (!isFolia()) throw new IllegalStateException("runAtLocationLater requires Folia");
+        if (isFolia()) {
+            RegionScheduler region = Bukkit.getRegionScheduler();
+            assignFoliaTask(region.runDelayed(plugin, loc, scheduled -> runTracked(), delayTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, this::runTracked, delayTicks);
+        }
 
-        RegionScheduler region = Bukkit.getRegionScheduler();
-        assignFoliaTask(region.runDelayed(plugin, loc, scheduled -> run(), delayTicks));
+        scheduled(delayTicks, -1);
         running.set(true);
         return this;
     }
@@ -203,25 +397,79 @@ public abstract class PaperRunnable implements Runnable {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(loc);
+        prepare(plugin, SchedulerType.REGION, loc);
+        delayTicks = spread(loc, delayTicks, periodTicks);
 
-        if (!isFolia()) throw new IllegalStateException("runAtLocationTimer requires Folia");
+        if (isFolia()) {
+            RegionScheduler region = Bukkit.getRegionScheduler();
+            assignFoliaTask(region.runAtFixedRate(plugin, loc, scheduled -> runTracked(), delayTicks, periodTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::runTracked, delayTicks, periodTicks);
+        }
 
-        RegionScheduler region = Bukkit.getRegionScheduler();
-        assignFoliaTask(region.runAtFixedRate(plugin, loc, scheduled -> run(), delayTicks, periodTicks));
+        bindPhase();
+        scheduled(delayTicks, periodTicks);
         running.set(true);
         return this;
     }
 
 
+    /**
+     * Runs this task on an entity's thread, immediately if the current thread
+     * already owns the entity (the main thread on non-Folia servers) and
+     * otherwise on the next tick through {@link #runAtEntity(Plugin, Entity)}.
+     * An inline run has no task ID and is no longer running once this returns.
+     */
+    public PaperRunnable runAtEntityNow(Plugin plugin, Entity entity) {
+        ensureNotRunning();
+        Objects.requireNonNull(plugin);
+        Objects.requireNonNull(entity);
+
+        boolean owned = isFolia() ? Bukkit.isOwnedByCurrentRegion(entity) : Bukkit.isPrimaryThread();
+        if (!owned) return runAtEntity(plugin, entity);
+
+        prepare(plugin, SchedulerType.ENTITY, entity);
+        runInline();
+        return this;
+    }
+
+    /**
+     * Like {@link #runAtEntityNow(Plugin, Entity)}, but calls {@code retired}
+     * instead if the entity is removed before the task can run.
+     */
+    public PaperRunnable runAtEntityNow(Plugin plugin, Entity entity, Runnable retired) {
+        ensureNotRunning();
+        Objects.requireNonNull(plugin);
+        Objects.requireNonNull(entity);
+        Objects.requireNonNull(retired);
+
+        boolean owned = isFolia() ? Bukkit.isOwnedByCurrentRegion(entity) : Bukkit.isPrimaryThread();
+        if (!owned) return runAtEntity(plugin, entity, retired);
+
+        if (!entity.isValid()) {
+            retired.run();
+            return this;
+        }
+
+        prepare(plugin, SchedulerType.ENTITY, entity);
+        runInline();
+        return this;
+    }
+
     public PaperRunnable runAtEntity(Plugin plugin, Entity entity) {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
+        prepare(plugin, SchedulerType.ENTITY, entity);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntity requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.run(plugin, scheduled -> runTracked(), this));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, entityTask(entity, this));
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.run(plugin, scheduled -> run(), this));
+        scheduled(0, -1);
         running.set(true);
         return this;
     }
@@ -231,11 +479,16 @@ public abstract class PaperRunnable implements Runnable {
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
         Objects.requireNonNull(retired);
+        prepare(plugin, SchedulerType.ENTITY, entity);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntity requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.run(plugin, scheduled -> runTracked(), retired));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, entityTask(entity, retired));
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.run(plugin, scheduled -> run(), retired));
+        scheduled(0, -1);
         running.set(true);
         return this;
     }
@@ -244,11 +497,16 @@ public abstract class PaperRunnable implements Runnable {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
+        prepare(plugin, SchedulerType.ENTITY, entity);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntityLater requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.runDelayed(plugin, scheduled -> runTracked(), this, delayTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, entityTask(entity, this), delayTicks);
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.runDelayed(plugin, scheduled -> run(), this, delayTicks));
+        scheduled(delayTicks, -1);
         running.set(true);
         return this;
     }
@@ -258,11 +516,16 @@ public abstract class PaperRunnable implements Runnable {
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
         Objects.requireNonNull(retired);
+        prepare(plugin, SchedulerType.ENTITY, entity);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntityLater requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.runDelayed(plugin, scheduled -> runTracked(), retired, delayTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, entityTask(entity, retired), delayTicks);
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.runDelayed(plugin, scheduled -> run(), retired, delayTicks));
+        scheduled(delayTicks, -1);
         running.set(true);
         return this;
     }
@@ -271,11 +534,18 @@ public abstract class PaperRunnable implements Runnable {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
+        prepare(plugin, SchedulerType.ENTITY, entity);
+        delayTicks = spread(entity, delayTicks, periodTicks);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntityTimer requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.runAtFixedRate(plugin, scheduled -> runTracked(), retiredHook(this), delayTicks, periodTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, entityTask(entity, retiredHook(this)), delayTicks, periodTicks);
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.runAtFixedRate(plugin, scheduled -> run(), this, delayTicks, periodTicks));
+        bindPhase();
+        scheduled(delayTicks, periodTicks);
         running.set(true);
         return this;
     }
@@ -285,11 +555,18 @@ public abstract class PaperRunnable implements Runnable {
         Objects.requireNonNull(plugin);
         Objects.requireNonNull(entity);
         Objects.requireNonNull(retired);
+        prepare(plugin, SchedulerType.ENTITY, entity);
+        delayTicks = spread(entity, delayTicks, periodTicks);
 
-        if (!isFolia()) throw new IllegalStateException("runAtEntityTimer requires Folia");
+        if (isFolia()) {
+            EntityScheduler es = entity.getScheduler();
+            assignFoliaTask(es.runAtFixedRate(plugin, scheduled -> runTracked(), retiredHook(retired), delayTicks, periodTicks));
+        } else {
+            bukkitTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, entityTask(entity, retiredHook(retired)), delayTicks, periodTicks);
+        }
 
-        EntityScheduler es = entity.getScheduler();
-        assignFoliaTask(es.runAtFixedRate(plugin, scheduled -> run(), retired, delayTicks, periodTicks));
+        bindPhase();
+        scheduled(delayTicks, periodTicks);
         running.set(true);
         return this;
     }
@@ -298,18 +575,20 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runAsync(Plugin plugin) {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
+        prepare(plugin, SchedulerType.ASYNC, null);
 
         if (isFolia()) {
             AsyncScheduler async = Bukkit.getAsyncScheduler();
-            assignFoliaTask(async.runNow(plugin, scheduled -> run()));
+            assignFoliaTask(async.runNow(plugin, scheduled -> runTracked()));
         } else {
             BukkitRunnable br = new BukkitRunnable() {
                 @Override
-                public void run() { PaperRunnable.this.run(); }
+                public void run() { PaperRunnable.this.runTracked(); }
             };
             bukkitTaskId = br.runTaskAsynchronously(plugin).getTaskId();
         }
 
+        scheduled(0, -1);
         running.set(true);
         return this;
     }
@@ -317,19 +596,21 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runAsyncLater(Plugin plugin, long delayTicks) {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
+        prepare(plugin, SchedulerType.ASYNC, null);
 
         if (isFolia()) {
             AsyncScheduler async = Bukkit.getAsyncScheduler();
             long delayMs = delayTicks * 50L;
-            assignFoliaTask(async.runDelayed(plugin, scheduled -> run(), delayMs, TimeUnit.MILLISECONDS));
+            assignFoliaTask(async.runDelayed(plugin, scheduled -> runTracked(), delayMs, TimeUnit.MILLISECONDS));
         } else {
             BukkitRunnable br = new BukkitRunnable() {
                 @Override
-                public void run() { PaperRunnable.this.run(); }
+                public void run() { PaperRunnable.this.runTracked(); }
             };
             bukkitTaskId = br.runTaskLaterAsynchronously(plugin, delayTicks).getTaskId();
         }
 
+        scheduled(delayTicks, -1);
         running.set(true);
         return this;
     }
@@ -337,20 +618,24 @@ public abstract class PaperRunnable implements Runnable {
     public PaperRunnable runAsyncTimer(Plugin plugin, long delayTicks, long periodTicks) {
         ensureNotRunning();
         Objects.requireNonNull(plugin);
+        prepare(plugin, SchedulerType.ASYNC, null);
+        delayTicks = spread(delayTicks, periodTicks);
 
         if (isFolia()) {
             AsyncScheduler async = Bukkit.getAsyncScheduler();
             long delayMs = delayTicks * 50L;
             long periodMs = periodTicks * 50L;
-            assignFoliaTask(async.runAtFixedRate(plugin, scheduled -> run(), delayMs, periodMs, TimeUnit.MILLISECONDS));
+            assignFoliaTask(async.runAtFixedRate(plugin, scheduled -> runTracked(), delayMs, periodMs, TimeUnit.MILLISECONDS));
         } else {
             BukkitRunnable br = new BukkitRunnable() {
                 @Override
-                public void run() { PaperRunnable.this.run(); }
+                public void run() { PaperRunnable.this.runTracked(); }
             };
             bukkitTaskId = br.runTaskTimerAsynchronously(plugin, delayTicks, periodTicks).getTaskId();
         }
 
+        bindPhase();
+        scheduled(delayTicks, periodTicks);
         running.set(true);
         return this;
     }
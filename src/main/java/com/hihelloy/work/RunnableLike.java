@@ -39,6 +39,10 @@ public interface RunnableLike {
         throw new UnsupportedOperationException("runTaskAsyncTimer not implemented");
     }
 
+    default void runAtLocationNow(Plugin plugin, Location loc) {
+        throw new UnsupportedOperationException("runAtLocationNow not implemented");
+    }
+
     default void runAtLocation(Plugin plugin, Location loc) {
         throw new UnsupportedOperationException("runAtLocation not implemented");
     }
@@ -52,6 +56,14 @@ public interface RunnableLike {
     }
 
 
+    default void runAtEntityNow(Plugin plugin, Entity entity) {
+        throw new UnsupportedOperationException("runAtEntityNow not implemented");
+    }
+
+    default void runAtEntityNow(Plugin plugin, Entity entity, Runnable retired) {
+        throw new UnsupportedOperationException("runAtEntityNow with retired not implemented");
+    }
+
     default void runAtEntity(Plugin plugin, Entity entity) {
         throw new UnsupportedOperationException("runAtEntity not implemented");
     }
@@ -106,6 +118,9 @@ public interface RunnableLike {
             @Override
             public void runTaskAsyncTimer(Plugin plugin, long delayTicks, long periodTicks) { pr.runAsyncTimer(plugin, delayTicks, periodTicks); }
 
+            @Override
+            public void runAtLocationNow(Plugin plugin, Location loc) { pr.runAtLocationNow(plugin, loc); }
+
             @Override
             public void runAtLocation(Plugin plugin, Location loc) { pr.runAtLocation(plugin, loc); }
 
@@ -115,6 +130,12 @@ public interface RunnableLike {
             @Override
             public void runAtLocationTimer(Plugin plugin, Location loc, long delayTicks, long periodTicks) { pr.runAtLocationTimer(plugin, loc, delayTicks, periodTicks); }
 
+            @Override
+            public void runAtEntityNow(Plugin plugin, Entity entity) { pr.runAtEntityNow(plugin, entity); }
+
+            @Override
+            public void runAtEntityNow(Plugin plugin, Entity entity, Runnable retired) { pr.runAtEntityNow(plugin, entity, retired); }
+
             @Override
             public void runAtEntity(Plugin plugin, Entity entity) { pr.runAtEntity(plugin, entity); }
 
@@ -1,12 +1,25 @@
 package com.hihelloy.work;
 
+import com.hihelloy.work.bench.BenchCommand;
+import com.hihelloy.work.durable.DurableTaskStore;
+import com.hihelloy.work.util.PluginQuotas;
+import com.hihelloy.work.util.ThreadUtilProvider;
+import com.hihelloy.work.util.WriteBehindSink;
+import org.bukkit.Bukkit;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
 public class Runnables extends JavaPlugin {
     public static RunnableLike runnable;
     public static PaperRunnable paperRunnable;
     public static int taskid;
     public static Runnables plugin;
+    public static DurableTaskStore durableTasks;
 
     @Override
     public void onEnable() {
@@ -21,6 +34,22 @@ public class Runnables extends JavaPlugin {
             runnable = RunnableLike.of(paperRunnable);
             runnable.runTaskTimer(this, 1L, 1L);
          */
+        saveDefaultConfig();
+        PluginQuotas quotas = new PluginQuotas(getLogger());
+        quotas.load(getConfig().getConfigurationSection("quotas"));
+        Bukkit.getPluginManager().registerEvents(quotas, this);
+        Bukkit.getServicesManager().register(ThreadUtilProvider.class, new ThreadUtilProvider(), this, ServicePriority.Normal);
+        try {
+            durableTasks = DurableTaskStore.open(this, new File(getDataFolder(), "durable"));
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Could not open the durable task store", e);
+        }
+        PluginCommand command = getCommand("runnables");
+        if (command != null) {
+            BenchCommand bench = new BenchCommand(this);
+            command.setExecutor(bench);
+            command.setTabCompleter(bench);
+        }
         getLogger().info("Runnables plugin enabled");
     }
 
@@ -29,6 +58,11 @@ public class Runnables extends JavaPlugin {
         /*
         runnable.cancelTask();
          */
+        WriteBehindSink.closeAll();
+        if (durableTasks != null) {
+            durableTasks.close();
+            durableTasks = null;
+        }
         getLogger().info("Runnables plugin disabled");
     }
 }
@@ -0,0 +1,13 @@
+package com.hihelloy.work;
+
+/**
+ * The scheduler a task was handed to. On non-Folia servers {@link #GLOBAL},
+ * {@link #REGION} and {@link #ENTITY} all end up on the main thread, but the
+ * type still records what the caller asked for.
+ */
+public enum SchedulerType {
+    GLOBAL,
+    REGION,
+    ENTITY,
+    ASYNC
+}
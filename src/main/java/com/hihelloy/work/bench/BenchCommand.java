@@ -0,0 +1,100 @@
+package com.hihelloy.work.bench;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Handles {@code /runnables bench [workload|all|stop] [tasks] [regions]},
+ * which runs a {@link SchedulerBenchmark} on the live server.
+ */
+public class BenchCommand implements TabExecutor {
+
+    private static final int DEFAULT_TASKS = 10_000;
+    private static final int DEFAULT_REGIONS = 16;
+    private static final int MAX_TASKS = 1_000_000;
+
+    private final Plugin plugin;
+
+    public BenchCommand(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (args.length == 0 || !args[0].equalsIgnoreCase("bench")) return false;
+
+        String which = args.length > 1 ? args[1].toLowerCase(Locale.ROOT) : "all";
+        if (which.equals("stop")) {
+            sender.sendMessage(SchedulerBenchmark.stop() ? "[bench] Benchmark stopped" : "[bench] No benchmark is running");
+            return true;
+        }
+
+        List<Workload> workloads;
+        if (which.equals("all")) {
+            workloads = Arrays.asList(Workload.values());
+        } else {
+            Workload workload = Workload.fromId(which);
+            if (workload == null) {
+                sender.sendMessage("[bench] Unknown workload " + which + ", expected one of " + workloadIds());
+                return true;
+            }
+            workloads = List.of(workload);
+        }
+
+        int tasks = parse(sender, args, 2, DEFAULT_TASKS, MAX_TASKS);
+        int regions = parse(sender, args, 3, DEFAULT_REGIONS, 1024);
+        if (tasks < 0 || regions < 0) return true;
+
+        if (!SchedulerBenchmark.start(plugin, sender, workloads, tasks, regions)) {
+            sender.sendMessage("[bench] A benchmark is already running, use /" + label + " bench stop to stop it");
+            return true;
+        }
+        sender.sendMessage("[bench] Running " + which + " with " + tasks + " tasks over up to " + regions + " regions");
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        List<String> options = switch (args.length) {
+            case 1 -> List.of("bench");
+            case 2 -> {
+                List<String> ids = new ArrayList<>(workloadIds());
+                ids.add("all");
+                ids.add("stop");
+                yield ids;
+            }
+            case 3 -> List.of("1000", "10000", "100000");
+            case 4 -> List.of("1", "16", "64");
+            default -> List.of();
+        };
+        String prefix = args.length == 0 ? "" : args[args.length - 1].toLowerCase(Locale.ROOT);
+        return options.stream().filter(option -> option.startsWith(prefix)).toList();
+    }
+
+    /**
+     * @return The parsed argument, the default if it is missing, or -1 after
+     *         telling the sender it is invalid.
+     */
+    private static int parse(CommandSender sender, String[] args, int index, int def, int max) {
+        if (args.length <= index) return def;
+        try {
+            int value = Integer.parseInt(args[index]);
+            if (value > 0 && value <= max) return value;
+        } catch (NumberFormatException ignored) {
+        }
+        sender.sendMessage("[bench] " + args[index] + " must be a number from 1 to " + max);
+        return -1;
+    }
+
+    private static List<String> workloadIds() {
+        return Arrays.stream(Workload.values()).map(Workload::id).toList();
+    }
+}
@@ -0,0 +1,36 @@
+package com.hihelloy.work.bench;
+
+import java.util.Locale;
+
+/**
+ * The measurements for one workload of a benchmark run. Latency is the time
+ * from when a task was due (scheduling time plus its delay) until it ran.
+ * Tick intervals are measured on the global region thread, the main thread
+ * on non-Folia servers.
+ */
+public record BenchmarkResult(Workload workload, int executions, int completed, double submitMillis,
+                              double durationMillis, double throughputPerSecond,
+                              double p50Millis, double p90Millis, double p99Millis, double maxMillis,
+                              double baselineTickMillis, double averageTickMillis, double maxTickMillis,
+                              double msptBefore, double msptAfter) {
+
+    public static final String CSV_HEADER = "workload,executions,completed,submit_ms,duration_ms,throughput_per_s,"
+            + "latency_p50_ms,latency_p90_ms,latency_p99_ms,latency_max_ms,"
+            + "baseline_tick_ms,avg_tick_ms,max_tick_ms,mspt_before,mspt_after";
+
+    public String toCsvRow() {
+        return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                workload.id(), executions, completed, submitMillis, durationMillis, throughputPerSecond,
+                p50Millis, p90Millis, p99Millis, maxMillis,
+                baselineTickMillis, averageTickMillis, maxTickMillis, msptBefore, msptAfter);
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "%s: %d/%d in %.1f ms (%.0f/s), latency p50 %.2f p90 %.2f p99 %.2f max %.2f ms, "
+                        + "tick avg %.2f max %.2f ms (baseline %.2f), MSPT %.2f -> %.2f",
+                workload.id(), completed, executions, durationMillis, throughputPerSecond,
+                p50Millis, p90Millis, p99Millis, maxMillis,
+                averageTickMillis, maxTickMillis, baselineTickMillis, msptBefore, msptAfter);
+    }
+}
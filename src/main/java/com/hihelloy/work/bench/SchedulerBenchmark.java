@@ -0,0 +1,400 @@
+package com.hihelloy.work.bench;
+
+import com.hihelloy.work.PaperRunnable;
+import com.hihelloy.work.RunnableLike;
+import com.hihelloy.work.util.PhaseSpreader;
+import com.hihelloy.work.util.ThreadUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Spawns synthetic workloads through {@link PaperRunnable}, {@link RunnableLike}
+ * and {@link ThreadUtil} on a live server and measures how they behave.<br><br>
+ *
+ * The run is driven by a one tick timer on the global region thread, the main
+ * thread on non-Folia servers. It first samples a baseline of tick intervals,
+ * then runs each workload in turn: all tasks of a workload are submitted in one
+ * tick, and the next workload starts once every execution has been seen or
+ * after 60 seconds. The timer's tick intervals while a workload runs show its
+ * MSPT impact, next to the server's own average tick time where available.
+ * <br><br>
+ *
+ * Location tasks are spread over a grid around online players and world spawns
+ * so they stay in loaded chunks; the number of distinct Folia regions this
+ * reaches depends on how spread out the players are.
+ */
+final class SchedulerBenchmark {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int BASELINE_TICKS = 40;
+    private static final int TIMER_RUNS = 5;
+    private static final int GRID_SPACING = 32;
+
+    private static volatile SchedulerBenchmark current;
+
+    private final Plugin plugin;
+    private final CommandSender sender;
+    private final List<Workload> workloads;
+    private final int tasks;
+    private final int regions;
+    private final List<BenchmarkResult> results = new ArrayList<>();
+    private final Object sampler;
+    private volatile boolean stopped;
+
+    // Only touched on the sampler's thread.
+    private int next;
+    private int baselineLeft = BASELINE_TICKS;
+    private long lastTick;
+    private long tickSum;
+    private long tickMax;
+    private int tickCount;
+    private double baselineTickMillis;
+
+    private Measurement measurement;
+
+    private SchedulerBenchmark(Plugin plugin, CommandSender sender, List<Workload> workloads, int tasks, int regions) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.workloads = workloads;
+        this.tasks = tasks;
+        this.regions = regions;
+        this.sampler = ThreadUtil.runSyncTimer(this::tick, 1L, 1L);
+    }
+
+    /**
+     * Starts a benchmark unless one is already running.
+     * @return Whether a benchmark was started.
+     */
+    static synchronized boolean start(Plugin plugin, CommandSender sender, List<Workload> workloads, int tasks, int regions) {
+        if (current != null) return false;
+        current = new SchedulerBenchmark(plugin, sender, List.copyOf(workloads), tasks, regions);
+        return true;
+    }
+
+    /**
+     * Stops the running benchmark. Tasks it already submitted still run.
+     * @return Whether a benchmark was running.
+     */
+    static synchronized boolean stop() {
+        SchedulerBenchmark benchmark = current;
+        if (benchmark == null) return false;
+        benchmark.stopped = true;
+        ThreadUtil.cancelTimerTask(benchmark.sampler);
+        current = null;
+        return true;
+    }
+
+    static boolean isRunning() {
+        return current != null;
+    }
+
+    private void tick() {
+        if (stopped) return;
+        long now = System.nanoTime();
+        if (lastTick != 0) {
+            long interval = now - lastTick;
+            tickSum += interval;
+            tickMax = Math.max(tickMax, interval);
+            tickCount++;
+        }
+        lastTick = now;
+
+        if (baselineLeft > 0) {
+            if (--baselineLeft == 0) {
+                baselineTickMillis = averageTickMillis();
+                reply("Baseline tick " + format(baselineTickMillis) + " ms, MSPT " + format(mspt()));
+                startNext();
+            }
+            return;
+        }
+        if (measurement == null) return;
+        if (measurement.isDone() || now - measurement.startedAt > TIMEOUT_NANOS) {
+            finishWorkload();
+            startNext();
+        }
+    }
+
+    private void startNext() {
+        measurement = null;
+        while (next < workloads.size()) {
+            Workload candidate = workloads.get(next++);
+            if (begin(candidate)) return;
+        }
+        finish();
+    }
+
+    private boolean begin(Workload candidate) {
+        List<Entity> entities = new ArrayList<>(Bukkit.getOnlinePlayers());
+        List<Location> locations = locations();
+        if (candidate == Workload.ENTITY && entities.isEmpty()) {
+            reply(candidate.id() + ": skipped, no players online");
+            return false;
+        }
+        if (candidate == Workload.LOCATION && locations.isEmpty()) {
+            reply(candidate.id() + ": skipped, no loaded locations");
+            return false;
+        }
+
+        tickSum = 0;
+        tickMax = 0;
+        tickCount = 0;
+        Measurement m = new Measurement(candidate, candidate == Workload.TIMER ? tasks * TIMER_RUNS : tasks, mspt());
+        measurement = m;
+        try {
+            submit(m, entities, locations);
+        } catch (Throwable t) {
+            plugin.getLogger().log(Level.WARNING, "Benchmark workload " + candidate.id() + " failed to submit", t);
+            reply(candidate.id() + ": failed to submit, " + t);
+        }
+        m.submitMillis = (System.nanoTime() - m.startedAt) / 1e6;
+        return true;
+    }
+
+    private void submit(Measurement m, List<Entity> entities, List<Location> locations) {
+        List<Location> ensured = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            long now = System.nanoTime();
+            switch (m.workload) {
+                case ONE_SHOT -> new Probe(m, now).runTask(plugin);
+                case DELAYED -> {
+                    long delay = 1 + i % 20;
+                    new Probe(m, now + delay * TICK_NANOS).runTaskLater(plugin, delay);
+                }
+                case TIMER -> {
+                    long period = 1 + i % 20;
+                    new TimerProbe(m, now + TICK_NANOS, period).runTaskTimer(plugin, 1L, period);
+                }
+                case ENTITY -> new Probe(m, now).runAtEntity(plugin, entities.get(i % entities.size()));
+                case LOCATION -> new Probe(m, now).runAtLocation(plugin, locations.get(i % locations.size()));
+                case ASYNC -> new Probe(m, now).runAsync(plugin);
+                case RUNNABLE_LIKE -> RunnableLike.of(new Probe(m, now)).runTask(plugin);
+                case THREAD_UTIL -> {
+                    switch (locations.isEmpty() ? i % 2 : i % 3) {
+                        case 0 -> ThreadUtil.runSync(() -> m.record(now));
+                        case 1 -> ThreadUtil.runAsync(() -> m.record(now));
+                        default -> ensured.add(locations.get(i % locations.size()));
+                    }
+                }
+            }
+        }
+
+        // ensureLocation runs inline on a thread that owns the location, which
+        // would record no scheduling latency, so submit it from an async thread.
+        if (!ensured.isEmpty()) {
+            ThreadUtil.runAsync(() -> {
+                for (Location location : ensured) {
+                    long now = System.nanoTime();
+                    ThreadUtil.ensureLocation(location, () -> m.record(now));
+                }
+            });
+        }
+    }
+
+    private void finishWorkload() {
+        Measurement m = measurement;
+        int done = m.completed.get();
+        // Slots are claimed before they are written, skip any still being filled in.
+        long[] sorted = Arrays.stream(m.latencies, 0, Math.min(m.recorded.get(), m.expected))
+                .filter(latency -> latency >= 0)
+                .sorted()
+                .toArray();
+
+        long end = m.lastCompletion.get();
+        double durationMillis = end == 0 ? 0 : (end - m.startedAt) / 1e6;
+        double throughput = durationMillis == 0 ? 0 : done / (durationMillis / 1000);
+
+        BenchmarkResult result = new BenchmarkResult(m.workload, m.expected, done, m.submitMillis, durationMillis, throughput,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                baselineTickMillis, averageTickMillis(), tickMax / 1e6, m.msptBefore, mspt());
+        results.add(result);
+        reply(result.summary() + (done < m.expected ? " (timed out)" : ""));
+    }
+
+    private void finish() {
+        stop();
+        List<String> lines = new ArrayList<>(results.size() + 1);
+        lines.add(BenchmarkResult.CSV_HEADER);
+        for (BenchmarkResult result : results) {
+            lines.add(result.toCsvRow());
+        }
+
+        File file = new File(new File(plugin.getDataFolder(), "bench"),
+                "bench-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        ThreadUtil.runAsync(() -> {
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+                reply("Benchmark finished, results written to " + file.getPath());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not write benchmark results to " + file, e);
+                reply("Benchmark finished, but the results could not be written: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Picks up to {@code regions} locations in loaded areas, one per region,
+     * on a grid around online players and world spawns.
+     */
+    private List<Location> locations() {
+        List<Location> centers = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            centers.add(player.getLocation());
+        }
+        for (World world : Bukkit.getWorlds()) {
+            centers.add(world.getSpawnLocation());
+        }
+
+        List<Location> locations = new ArrayList<>(regions);
+        Set<Object> seen = new HashSet<>();
+        for (int ring = 0; ring < 8 && locations.size() < regions; ring++) {
+            for (Location center : centers) {
+                for (int dx = -ring; dx <= ring && locations.size() < regions; dx++) {
+                    for (int dz = -ring; dz <= ring && locations.size() < regions; dz++) {
+                        if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) continue;
+                        Location location = center.clone().add(dx * GRID_SPACING, 0, dz * GRID_SPACING);
+                        World world = location.getWorld();
+                        if (world == null || !world.isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) continue;
+                        if (seen.add(PhaseSpreader.regionOf(location))) locations.add(location);
+                    }
+                }
+            }
+        }
+        return locations;
+    }
+
+    private double averageTickMillis() {
+        return tickCount == 0 ? 0 : tickSum / 1e6 / tickCount;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * @return The server's average tick time, or NaN where it is not available.
+     */
+    private static double mspt() {
+        try {
+            return Bukkit.getAverageTickTime();
+        } catch (Throwable t) {
+            return Double.NaN;
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private void reply(String message) {
+        if (sender instanceof Entity entity) {
+            ThreadUtil.ensureEntity(entity, () -> sender.sendMessage("[bench] " + message));
+        } else {
+            sender.sendMessage("[bench] " + message);
+        }
+    }
+
+    /**
+     * The executions seen for one workload. Tasks that run after their
+     * workload timed out still record here, not into the next workload.
+     */
+    private static final class Measurement {
+        private final Workload workload;
+        private final int expected;
+        private final double msptBefore;
+        private final long startedAt = System.nanoTime();
+        private final long[] latencies;
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicLong lastCompletion = new AtomicLong();
+        private double submitMillis;
+
+        private Measurement(Workload workload, int expected, double msptBefore) {
+            this.workload = workload;
+            this.expected = expected;
+            this.msptBefore = msptBefore;
+            this.latencies = new long[expected];
+            Arrays.fill(latencies, -1);
+        }
+
+        private void record(long dueAt) {
+            long now = System.nanoTime();
+            int index = recorded.getAndIncrement();
+            if (index >= latencies.length) return;
+            latencies[index] = Math.max(0, now - dueAt);
+            lastCompletion.accumulateAndGet(now, Math::max);
+            completed.incrementAndGet();
+        }
+
+        private boolean isDone() {
+            return completed.get() >= expected;
+        }
+    }
+
+    /**
+     * Records its latency when it runs.
+     */
+    private static final class Probe extends PaperRunnable {
+        private final Measurement measurement;
+        private final long dueAt;
+
+        private Probe(Measurement measurement, long dueAt) {
+            this.measurement = measurement;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public void run() {
+            measurement.record(dueAt);
+        }
+    }
+
+    /**
+     * Records its latency on each run and cancels itself after {@link #TIMER_RUNS}.
+     */
+    private static final class TimerProbe extends PaperRunnable {
+        private final Measurement measurement;
+        private final long periodNanos;
+        private long dueAt;
+        private int runs;
+
+        private TimerProbe(Measurement measurement, long dueAt, long period) {
+            this.measurement = measurement;
+            this.dueAt = dueAt;
+            this.periodNanos = period * TICK_NANOS;
+        }
+
+        @Override
+        public void run() {
+            measurement.record(dueAt);
+            dueAt += periodNanos;
+            if (++runs >= TIMER_RUNS) cancel();
+        }
+    }
+}
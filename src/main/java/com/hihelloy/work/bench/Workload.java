@@ -0,0 +1,39 @@
+package com.hihelloy.work.bench;
+
+import java.util.Locale;
+
+/**
+ * A synthetic workload spawned by {@code /runnables bench}.
+ */
+public enum Workload {
+    /** {@code PaperRunnable.runTask} */
+    ONE_SHOT,
+    /** {@code PaperRunnable.runTaskLater} with delays of 1 to 20 ticks. */
+    DELAYED,
+    /** {@code PaperRunnable.runTaskTimer} with periods of 1 to 20 ticks, each running a few times. */
+    TIMER,
+    /** {@code PaperRunnable.runAtEntity} on online players. */
+    ENTITY,
+    /** {@code PaperRunnable.runAtLocation} on locations spread over many regions. */
+    LOCATION,
+    /** {@code PaperRunnable.runAsync} */
+    ASYNC,
+    /** {@code RunnableLike.of(PaperRunnable).runTask} */
+    RUNNABLE_LIKE,
+    /** A mix of {@code ThreadUtil.runSync}, {@code runAsync} and {@code ensureLocation} called from an async thread. */
+    THREAD_UTIL;
+
+    public String id() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The workload with the given id, or null if there is none.
+     */
+    public static Workload fromId(String id) {
+        for (Workload workload : values()) {
+            if (workload.id().equalsIgnoreCase(id)) return workload;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,313 @@
+package com.hihelloy.work.durable;
+
+import com.hihelloy.work.PaperRunnable;
+import com.hihelloy.work.util.ThreadUtil;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * A persistent store for long-delay tasks such as cooldowns, timed unbans or
+ * crop timers. Tasks are kept as {@link TaskDescriptor}s on disk instead of as
+ * live {@link PaperRunnable}s on the heap, and they survive restarts.<br><br>
+ *
+ * Tasks are written to an append-only log with an index sorted by due time,
+ * kept by a {@link TaskLog}. Only tasks due within the near-term window (5
+ * minutes by default) are read into memory. Every half window, off the main
+ * thread, the tasks that have come into the window are read and the log is
+ * maintained; see {@link TaskLog} for the file layout.<br><br>
+ *
+ * Due tasks are handed to the handler registered for their type on the
+ * global region thread (the main thread on non-Folia servers). A task is only
+ * marked complete after its handler returns, so a crash can run a task twice
+ * but never loses one. Tasks that came due while the server was down run as
+ * soon as their handler is registered.
+ */
+public final class DurableTaskStore {
+
+    private static final Duration DEFAULT_WINDOW = Duration.ofMinutes(5);
+
+    private final Plugin plugin;
+    private final TaskLog taskLog;
+    private final long windowMillis;
+
+    private long loadedUntil = Long.MIN_VALUE;
+    private long nextScanAt;
+    private boolean scanning;
+    private boolean closed;
+
+    private final PriorityQueue<TaskDescriptor> dueQueue = new PriorityQueue<>(Comparator.comparingLong(TaskDescriptor::dueAt));
+    private final Map<Long, TaskDescriptor> loaded = new HashMap<>();
+    private final Map<String, List<TaskDescriptor>> unhandled = new HashMap<>();
+    private final Map<String, Consumer<TaskDescriptor>> handlers = new ConcurrentHashMap<>();
+
+    private PaperRunnable ticker;
+
+    private DurableTaskStore(Plugin plugin, TaskLog taskLog, Duration window) {
+        this.plugin = plugin;
+        this.taskLog = taskLog;
+        this.windowMillis = window.toMillis();
+    }
+
+    /**
+     * Opens the store in a directory with the default 5 minute window,
+     * rebuilding its state from disk, and starts firing due tasks.
+     * @param plugin The plugin to run the store's tasks under.
+     * @param directory The directory holding the store files.
+     * @return The opened store.
+     * @throws IOException If the store files cannot be read or created.
+     */
+    public static DurableTaskStore open(Plugin plugin, File directory) throws IOException {
+        return open(plugin, directory, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Opens the store in a directory, rebuilding its state from disk, and
+     * starts firing due tasks.
+     * @param plugin The plugin to run the store's tasks under.
+     * @param directory The directory holding the store files.
+     * @param window How far ahead tasks are loaded into memory.
+     * @return The opened store.
+     * @throws IOException If the store files cannot be read or created.
+     */
+    public static DurableTaskStore open(Plugin plugin, File directory, Duration window) throws IOException {
+        Objects.requireNonNull(plugin, "plugin");
+        Objects.requireNonNull(directory, "directory");
+        if (window.isNegative() || window.isZero()) throw new IllegalArgumentException("window must be positive");
+
+        DurableTaskStore store = new DurableTaskStore(plugin, TaskLog.open(directory.toPath()), window);
+        store.nextScanAt = System.currentTimeMillis() + store.windowMillis / 2;
+        store.loadWindow(System.currentTimeMillis() + store.windowMillis);
+        try {
+            store.taskLog.maintain();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not maintain the durable task store", e);
+        }
+
+        store.ticker = new PaperRunnable() {
+            @Override
+            public void run() {
+                store.tick();
+            }
+        };
+        store.ticker.runTaskTimer(plugin, 1L, 1L);
+        return store;
+    }
+
+    /**
+     * Registers the handler for a task type. Tasks of that type that are
+     * already due, including ones that came due while the server was down,
+     * run on the next tick.
+     * @param type The task type.
+     * @param handler Runs each due task of this type.
+     */
+    public synchronized void registerHandler(String type, Consumer<TaskDescriptor> handler) {
+        Objects.requireNonNull(type, "type");
+        Objects.requireNonNull(handler, "handler");
+        handlers.put(type, handler);
+
+        List<TaskDescriptor> waiting = unhandled.remove(type);
+        if (waiting != null) dueQueue.addAll(waiting);
+    }
+
+    /**
+     * Schedules a task after a delay.
+     * @return The ID of the task, which can be passed to {@link #cancel(long)}.
+     */
+    public long schedule(String type, byte[] payload, Duration delay) {
+        return scheduleAt(type, payload, System.currentTimeMillis() + delay.toMillis());
+    }
+
+    /**
+     * Schedules a task with a UTF-8 string payload after a delay.
+     * @return The ID of the task, which can be passed to {@link #cancel(long)}.
+     */
+    public long schedule(String type, String payload, Duration delay) {
+        return schedule(type, payload.getBytes(StandardCharsets.UTF_8), delay);
+    }
+
+    /**
+     * Schedules a task at a fixed point in time.
+     * @param type The handler type.
+     * @param payload The serialized task data.
+     * @param dueAt When the task is due, in epoch milliseconds.
+     * @return The ID of the task, which can be passed to {@link #cancel(long)}.
+     */
+    public synchronized long scheduleAt(String type, byte[] payload, long dueAt) {
+        Objects.requireNonNull(type, "type");
+        Objects.requireNonNull(payload, "payload");
+        ensureOpen();
+
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        if (typeBytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("type is too long");
+
+        long id;
+        try {
+            id = taskLog.schedule(typeBytes, payload, dueAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (dueAt < loadedUntil) {
+            TaskDescriptor descriptor = new TaskDescriptor(id, type, payload, dueAt);
+            loaded.put(id, descriptor);
+            dueQueue.add(descriptor);
+        }
+        return id;
+    }
+
+    /**
+     * Cancels a task. Does nothing if the task has already run or been cancelled.
+     * @param id The ID returned when the task was scheduled.
+     */
+    public synchronized void cancel(long id) {
+        ensureOpen();
+        loaded.remove(id);
+        finish(id);
+    }
+
+    /**
+     * @return The number of tasks that have not run or been cancelled yet.
+     */
+    public synchronized long getPendingCount() {
+        return taskLog.getLiveCount();
+    }
+
+    /**
+     * @return The number of tasks currently held in memory.
+     */
+    public synchronized int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Stops firing tasks and flushes the log to disk.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+
+        if (ticker != null) ticker.cancel();
+        try {
+            taskLog.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not close the durable task store", e);
+        }
+    }
+
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        List<TaskDescriptor> due = null;
+
+        synchronized (this) {
+            if (closed) return;
+
+            TaskDescriptor next;
+            while ((next = dueQueue.peek()) != null && next.dueAt() <= now) {
+                dueQueue.poll();
+                if (!loaded.containsKey(next.id())) continue;
+
+                if (!handlers.containsKey(next.type())) {
+                    unhandled.computeIfAbsent(next.type(), t -> new ArrayList<>()).add(next);
+                    continue;
+                }
+                if (due == null) due = new ArrayList<>();
+                due.add(next);
+            }
+
+            if (!scanning && now >= nextScanAt) {
+                scanning = true;
+                nextScanAt = now + windowMillis / 2;
+                ThreadUtil.runAsync(this::rescan);
+            }
+        }
+
+        if (due == null) return;
+        for (TaskDescriptor descriptor : due) {
+            try {
+                handlers.get(descriptor.type()).accept(descriptor);
+            } catch (Throwable t) {
+                plugin.getLogger().log(Level.WARNING, "Durable task " + descriptor.id() + " (" + descriptor.type() + ") failed", t);
+            }
+            complete(descriptor.id());
+        }
+    }
+
+    private synchronized void complete(long id) {
+        if (closed) return;
+        if (loaded.remove(id) != null) finish(id);
+    }
+
+    private void finish(long id) {
+        try {
+            taskLog.finish(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the tasks coming due in the next window, then merges or compacts
+     * the log if either is due.
+     */
+    private void rescan() {
+        try {
+            loadWindow(System.currentTimeMillis() + windowMillis);
+            taskLog.maintain();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not maintain the durable task store", e);
+        } finally {
+            synchronized (this) {
+                scanning = false;
+            }
+        }
+    }
+
+    /**
+     * Loads the live tasks due before {@code until} that are not in memory
+     * yet. Every task due before {@code loadedUntil} already is, so only tasks
+     * due from there are read. The reading happens on a snapshot without the
+     * lock; records appended since are picked up under it.
+     */
+    private void loadWindow(long until) {
+        long from;
+        synchronized (this) {
+            if (closed) return;
+            from = loadedUntil;
+        }
+
+        TaskLog.Snapshot snapshot = taskLog.snapshot();
+        List<TaskDescriptor> found = taskLog.due(snapshot, from, until);
+
+        synchronized (this) {
+            if (closed) return;
+            taskLog.dueSince(snapshot, from, until, found);
+            for (TaskDescriptor descriptor : found) {
+                if (!taskLog.isLive(descriptor.id()) || loaded.containsKey(descriptor.id())) continue;
+                loaded.put(descriptor.id(), descriptor);
+                dueQueue.add(descriptor);
+            }
+            loadedUntil = Math.max(loadedUntil, until);
+        }
+    }
+
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("The durable task store is closed");
+    }
+}
@@ -0,0 +1,22 @@
+package com.hihelloy.work.durable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A serialized task kept by a {@link DurableTaskStore}. The {@code type}
+ * selects the handler that runs it, and the {@code payload} holds whatever
+ * that handler needs, for example a player UUID for a timed unban.
+ * @param id The ID assigned by the store.
+ * @param type The handler type.
+ * @param payload The serialized task data.
+ * @param dueAt When the task is due, in epoch milliseconds.
+ */
+public record TaskDescriptor(long id, String type, byte[] payload, long dueAt) {
+
+    /**
+     * @return The payload decoded as UTF-8.
+     */
+    public String payloadAsString() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
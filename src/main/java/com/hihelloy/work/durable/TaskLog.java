@@ -0,0 +1,836 @@
+package com.hihelloy.work.durable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The on-disk half of a {@link DurableTaskStore}: an append-only log of task
+ * records, a run indexing it by due time, and which task IDs are still live.
+ * It knows nothing about scheduling, so it can be opened, written to and
+ * maintained on its own.<br><br>
+ *
+ * The store directory holds:
+ * <ul>
+ *     <li>{@code tasks-<generation>.log}, a memory-mapped, append-only log
+ *     holding every scheduled task and every completion or cancellation as a
+ *     length-prefixed record. It is the source of truth.</li>
+ *     <li>{@code tasks-<generation>-<n>.idx}, a run of fixed 24-byte entries
+ *     (due time, id, log offset) sorted by due time, covering the log up to a
+ *     recorded offset. It can always be rebuilt from the log.</li>
+ *     <li>{@code tasks.manifest}, naming the current log and index.</li>
+ * </ul>
+ * Merging the tail of the log into the run and compacting the log both write
+ * new files under new names and then switch the manifest, so a file is never
+ * replaced while it is mapped, which Windows does not allow. Files that are no
+ * longer current are deleted once nothing maps them, or on the next open.
+ * Stores written before the manifest existed use {@code tasks.log} and
+ * {@code tasks.idx}, and keep working.<br><br>
+ *
+ * Schedules, tombstones and liveness checks may come from any thread.
+ * Reading due tasks, merging and compacting must not run at the same time as
+ * each other; they read without holding the lock and only take it to pick up
+ * recent records or swap files in.
+ */
+final class TaskLog implements Closeable {
+
+    private static final int LOG_MAGIC = 0x524E4C47;
+    private static final int INDEX_MAGIC = 0x524E4958;
+    private static final int LOG_VERSION = 1;
+    /** Version 2 turned the index into a run sorted by due time. */
+    private static final int INDEX_VERSION = 2;
+    /**
+     * Log: magic, version, generation and the lowest ID that has never been used.
+     * Index: magic, version, log generation and the log offset the run covers.
+     */
+    private static final int HEADER_SIZE = 24;
+    /** Due time, id and log offset. */
+    private static final int INDEX_ENTRY_SIZE = 24;
+    /** Kind, id, due time and type length, before the type and payload bytes. */
+    private static final int SCHEDULE_FIXED_SIZE = 19;
+    /** Kind and id. */
+    private static final int TOMBSTONE_SIZE = 9;
+    private static final byte KIND_SCHEDULE = 1;
+    private static final byte KIND_TOMBSTONE = 2;
+    private static final int GROW_SIZE = 1 << 20;
+    private static final int COMPACT_MIN_DEAD = 4096;
+    private static final int MERGE_MIN_TAIL = 4096;
+
+    private static final String MANIFEST = "tasks.manifest";
+    private static final String LEGACY_LOG = "tasks.log";
+    private static final String LEGACY_INDEX = "tasks.idx";
+
+    private final Path directory;
+
+    private Path logPath;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private int logEnd;
+    private long generation;
+
+    /** The current index file, or null if there is none yet. */
+    private Path indexPath;
+    /** The sorted run. It is never written to, only replaced. */
+    private ByteBuffer run;
+    private int runCount;
+    /** The log offset the run covers, records after it are the tail. */
+    private int indexedTo;
+    private int tailSchedules;
+    private boolean runValid;
+
+    private long nextId = 1;
+    /** Live task IDs, offset by {@code idBase}. */
+    private BitSet live = new BitSet();
+    private long idBase = 1;
+    private long liveCount;
+    private long deadCount;
+
+    /** Replaced files that could not be deleted yet, because they were still mapped. */
+    private final List<Path> obsolete = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * What {@link #due(Snapshot, long, long)} reads without the lock.
+     */
+    static final class Snapshot {
+        private final ByteBuffer run;
+        private final ByteBuffer log;
+        private final int runCount;
+        private final int tailFrom;
+        private final int tailTo;
+        private final long generation;
+
+        private Snapshot(ByteBuffer run, ByteBuffer log, int runCount, int tailFrom, int tailTo, long generation) {
+            this.run = run;
+            this.log = log;
+            this.runCount = runCount;
+            this.tailFrom = tailFrom;
+            this.tailTo = tailTo;
+            this.generation = generation;
+        }
+    }
+
+    private record Run(ByteBuffer buffer, int count, int indexedTo) {
+    }
+
+    private TaskLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the log in a directory, creating it if it is empty, and rebuilds
+     * which tasks are live. This is the only full pass over the log.
+     * @throws IOException If the files cannot be read or created.
+     */
+    static TaskLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        TaskLog taskLog = new TaskLog(directory);
+        synchronized (taskLog) {
+            taskLog.load();
+        }
+        return taskLog;
+    }
+
+    /**
+     * Appends a task.
+     * @return The ID of the task.
+     */
+    synchronized long schedule(byte[] type, byte[] payload, long dueAt) throws IOException {
+        ensureOpen();
+        long id = nextId;
+        int length = SCHEDULE_FIXED_SIZE + type.length + payload.length;
+        int pos = reserve(length);
+        log.put(pos + 4, KIND_SCHEDULE);
+        log.putLong(pos + 5, id);
+        log.putLong(pos + 13, dueAt);
+        log.putShort(pos + 21, (short) type.length);
+        log.put(pos + 23, type);
+        log.put(pos + 23 + type.length, payload);
+        // The length goes last, a record is only visible once it is complete.
+        log.putInt(pos, length);
+        logEnd = pos + 4 + length;
+
+        nextId++;
+        markLive(id);
+        liveCount++;
+        tailSchedules++;
+        return id;
+    }
+
+    /**
+     * Marks a task as finished, whether it ran or was cancelled.
+     * @return Whether the task was live. Nothing is written if it was not.
+     */
+    synchronized boolean finish(long id) throws IOException {
+        ensureOpen();
+        if (!isLive(live, idBase, id)) return false;
+
+        int pos = reserve(TOMBSTONE_SIZE);
+        log.put(pos + 4, KIND_TOMBSTONE);
+        log.putLong(pos + 5, id);
+        log.putInt(pos, TOMBSTONE_SIZE);
+        logEnd = pos + 4 + TOMBSTONE_SIZE;
+
+        live.clear((int) (id - idBase));
+        liveCount--;
+        deadCount++;
+        return true;
+    }
+
+    synchronized boolean isLive(long id) {
+        return isLive(live, idBase, id);
+    }
+
+    synchronized long getLiveCount() {
+        return liveCount;
+    }
+
+    synchronized long getDeadCount() {
+        return deadCount;
+    }
+
+    synchronized int getRunCount() {
+        return runCount;
+    }
+
+    synchronized int getTailSchedules() {
+        return tailSchedules;
+    }
+
+    /**
+     * @return Whether the index on disk matched the log when it was opened,
+     *         or has been rebuilt since.
+     */
+    synchronized boolean isRunValid() {
+        return runValid;
+    }
+
+    synchronized int getLogEnd() {
+        return logEnd;
+    }
+
+    synchronized Path getLogPath() {
+        return logPath;
+    }
+
+    synchronized Path getIndexPath() {
+        return indexPath;
+    }
+
+    /**
+     * Flushes the log to disk and closes it. Buffers already handed out stay
+     * readable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        log.force();
+        logChannel.close();
+    }
+
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(run.duplicate(), log.duplicate(), runCount, indexedTo, logEnd, generation);
+    }
+
+    /**
+     * Reads the tasks in a snapshot that are due in {@code [from, until)},
+     * without the lock. The part of the run from {@code from} is found by
+     * binary search, and only the log records after the run are scanned.
+     * Tasks that finished after the snapshot was taken are included.
+     */
+    List<TaskDescriptor> due(Snapshot snapshot, long from, long until) {
+        List<TaskDescriptor> found = new ArrayList<>();
+        ByteBuffer run = snapshot.run;
+        for (int i = firstDueAtOrAfter(run, snapshot.runCount, from); i < snapshot.runCount; i++) {
+            int pos = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+            if (run.getLong(pos) >= until) break;
+            found.add(readSchedule(snapshot.log, (int) run.getLong(pos + 16)));
+        }
+        scanTail(snapshot.log, snapshot.tailFrom, snapshot.tailTo, from, until, found);
+        return found;
+    }
+
+    /**
+     * Adds the tasks due in {@code [from, until)} that were appended after a snapshot.
+     */
+    synchronized void dueSince(Snapshot snapshot, long from, long until, List<TaskDescriptor> out) {
+        if (snapshot.generation != generation) {
+            throw new IllegalStateException("The log was compacted while it was being read");
+        }
+        scanTail(log, snapshot.tailTo, logEnd, from, until, out);
+    }
+
+    /**
+     * Compacts the log if most of it is dead, otherwise folds the tail into
+     * the run if the tail has grown large or the run could not be used.
+     */
+    void maintain() throws IOException {
+        if (shouldCompact()) {
+            compact();
+        } else if (shouldMerge()) {
+            merge();
+        }
+    }
+
+    synchronized boolean shouldCompact() {
+        return deadCount >= COMPACT_MIN_DEAD && deadCount > liveCount;
+    }
+
+    synchronized boolean shouldMerge() {
+        return !runValid || tailSchedules >= Math.max(MERGE_MIN_TAIL, runCount / 4);
+    }
+
+    /**
+     * Folds the tail into a new run, dropping finished tasks. The run is
+     * written to a new file without the lock, which is only taken to switch
+     * the manifest over to it.
+     */
+    void merge() throws IOException {
+        ByteBuffer runSnapshot;
+        ByteBuffer logSnapshot;
+        BitSet liveSnapshot;
+        long base;
+        long gen;
+        int count;
+        int tailFrom;
+        int tailTo;
+        int merged;
+        Path target;
+        synchronized (this) {
+            if (closed) return;
+            deleteObsolete();
+            runSnapshot = run.duplicate();
+            logSnapshot = log.duplicate();
+            liveSnapshot = (BitSet) live.clone();
+            base = idBase;
+            gen = generation;
+            count = runCount;
+            tailFrom = indexedTo;
+            tailTo = logEnd;
+            merged = tailSchedules;
+            target = newIndexPath(gen);
+        }
+
+        boolean switched = false;
+        try {
+            List<long[]> tail = new ArrayList<>();
+            for (int pos = tailFrom; pos < tailTo; pos += 4 + logSnapshot.getInt(pos)) {
+                if (logSnapshot.get(pos + 4) != KIND_SCHEDULE) continue;
+                long id = logSnapshot.getLong(pos + 5);
+                if (isLive(liveSnapshot, base, id)) tail.add(new long[]{logSnapshot.getLong(pos + 13), id, pos});
+            }
+            tail.sort(Comparator.comparingLong(entry -> entry[0]));
+
+            try (RunWriter writer = new RunWriter(target, gen, tailTo)) {
+                int next = 0;
+                for (int i = 0; i < count; i++) {
+                    int pos = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+                    long dueAt = runSnapshot.getLong(pos);
+                    long id = runSnapshot.getLong(pos + 8);
+                    if (!isLive(liveSnapshot, base, id)) continue;
+                    while (next < tail.size() && tail.get(next)[0] < dueAt) writer.write(tail.get(next++));
+                    writer.write(dueAt, id, runSnapshot.getLong(pos + 16));
+                }
+                while (next < tail.size()) writer.write(tail.get(next++));
+            }
+
+            synchronized (this) {
+                if (closed || generation != gen) return;
+
+                Run rebuilt = readRun(target, gen, logEnd);
+                if (rebuilt == null) throw new IOException(target + " could not be read back");
+                writeManifest(logPath, target);
+                switched = true;
+
+                retire(indexPath);
+                indexPath = target;
+                setRun(rebuilt);
+                runValid = true;
+                tailSchedules -= merged;
+            }
+        } finally {
+            if (!switched) deleteQuietly(target);
+        }
+    }
+
+    void compact() throws IOException {
+        compact(null);
+    }
+
+    /**
+     * Rewrites the log with only the live tasks under a new generation, along
+     * with a matching run. The copy is written to new files without the lock.
+     * Under the lock, records appended in the meantime are carried over and
+     * the manifest is switched to the new files. If anything fails before the
+     * switch, the current files stay in use untouched.
+     * @param afterCopy Runs once the copy is written, before the lock is
+     *                  taken. Lets tests append while a compaction is running.
+     */
+    void compact(Runnable afterCopy) throws IOException {
+        ByteBuffer logSnapshot;
+        BitSet liveSnapshot;
+        long base;
+        long gen;
+        long idFloor;
+        long deadAtSnapshot;
+        int end;
+        long newGeneration;
+        Path newLogPath;
+        Path newIndexPath;
+        synchronized (this) {
+            if (closed) return;
+            deleteObsolete();
+            logSnapshot = log.duplicate();
+            liveSnapshot = (BitSet) live.clone();
+            base = idBase;
+            gen = generation;
+            idFloor = nextId;
+            deadAtSnapshot = deadCount;
+            end = logEnd;
+            newGeneration = Math.max(System.currentTimeMillis(), gen + 1);
+            newLogPath = directory.resolve("tasks-" + newGeneration + ".log");
+            newIndexPath = newIndexPath(newGeneration);
+        }
+
+        FileChannel newChannel = null;
+        boolean switched = false;
+        try {
+            List<long[]> entries = new ArrayList<>();
+            long newEnd = HEADER_SIZE;
+
+            Files.deleteIfExists(newLogPath);
+            try (FileChannel ch = FileChannel.open(newLogPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16))) {
+                // Completed tasks are dropped, so the next ID is kept in the header to never reuse one.
+                out.writeInt(LOG_MAGIC);
+                out.writeInt(LOG_VERSION);
+                out.writeLong(newGeneration);
+                out.writeLong(idFloor);
+
+                byte[] record = new byte[256];
+                for (int pos = HEADER_SIZE; pos < end; pos += 4 + logSnapshot.getInt(pos)) {
+                    if (logSnapshot.get(pos + 4) != KIND_SCHEDULE) continue;
+                    long id = logSnapshot.getLong(pos + 5);
+                    if (!isLive(liveSnapshot, base, id)) continue;
+
+                    int size = 4 + logSnapshot.getInt(pos);
+                    if (record.length < size) record = new byte[size];
+                    logSnapshot.get(pos, record, 0, size);
+                    out.write(record, 0, size);
+                    entries.add(new long[]{logSnapshot.getLong(pos + 13), id, newEnd});
+                    newEnd += size;
+                }
+                out.flush();
+                ch.force(true);
+            }
+            if (newEnd > Integer.MAX_VALUE) throw new IOException("Durable task file is too large to map");
+
+            entries.sort(Comparator.comparingLong(entry -> entry[0]));
+            try (RunWriter writer = new RunWriter(newIndexPath, newGeneration, newEnd)) {
+                for (long[] entry : entries) writer.write(entry);
+            }
+
+            if (afterCopy != null) afterCopy.run();
+
+            synchronized (this) {
+                if (closed || generation != gen) return;
+
+                // Carry over whatever was appended while copying.
+                newChannel = FileChannel.open(newLogPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                int carriedSchedules = 0;
+                if (logEnd > end) {
+                    ByteBuffer carried = log.duplicate();
+                    carried.limit(logEnd).position(end);
+                    long position = newEnd;
+                    while (carried.hasRemaining()) position += newChannel.write(carried, position);
+                    for (int pos = end; pos < logEnd; pos += 4 + log.getInt(pos)) {
+                        if (log.get(pos + 4) == KIND_SCHEDULE) carriedSchedules++;
+                    }
+                }
+                int newLogEnd = (int) newEnd + (logEnd - end);
+                if (newLogEnd < 0) throw new IOException("Durable task file is too large to map");
+                MappedByteBuffer newLog = map(newChannel);
+                Run newRun = readRun(newIndexPath, newGeneration, newLogEnd);
+                if (newRun == null) throw new IOException(newIndexPath + " could not be read back");
+
+                writeManifest(newLogPath, newIndexPath);
+                switched = true;
+
+                FileChannel oldChannel = logChannel;
+                retire(logPath);
+                retire(indexPath);
+                logChannel = newChannel;
+                log = newLog;
+                logPath = newLogPath;
+                logEnd = newLogEnd;
+                generation = newGeneration;
+                indexPath = newIndexPath;
+                setRun(newRun);
+                runValid = true;
+
+                int first = live.nextSetBit(0);
+                long newBase = first < 0 ? nextId : idBase + first;
+                int shift = (int) (newBase - idBase);
+                live = live.get(shift, Math.max(shift, live.length()));
+                idBase = newBase;
+                deadCount -= deadAtSnapshot;
+                tailSchedules = carriedSchedules;
+
+                try {
+                    oldChannel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        } finally {
+            if (!switched) {
+                if (newChannel != null) {
+                    try {
+                        newChannel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                deleteQuietly(newLogPath);
+                deleteQuietly(newIndexPath);
+            }
+        }
+    }
+
+
+    private void load() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        Path index;
+        if (Files.exists(manifest)) {
+            List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || lines.get(0).isEmpty()) throw new IOException(manifest + " is empty");
+            Path current = resolve(lines.get(0));
+            if (!Files.exists(current)) throw new IOException(manifest + " names " + current + ", which is missing");
+            index = lines.size() > 1 && !lines.get(1).isEmpty() ? resolve(lines.get(1)) : null;
+            openLog(current, 0);
+        } else if (Files.exists(directory.resolve(LEGACY_LOG))) {
+            index = directory.resolve(LEGACY_INDEX);
+            openLog(directory.resolve(LEGACY_LOG), 0);
+        } else {
+            long fresh = System.currentTimeMillis();
+            index = null;
+            openLog(directory.resolve("tasks-" + fresh + ".log"), fresh);
+            writeManifest(logPath, null);
+        }
+
+        Run stored = index == null ? null : readRun(index, generation, logEnd);
+        runValid = stored != null;
+        indexPath = stored == null ? null : index;
+        if (stored == null) retire(index);
+        setRun(stored == null ? new Run(ByteBuffer.allocate(HEADER_SIZE), 0, HEADER_SIZE) : stored);
+        scanLiveness();
+        if (Files.exists(manifest)) deleteStrays();
+    }
+
+    /**
+     * Opens and maps a log file, creating it with {@code freshGeneration} if it is empty.
+     */
+    private void openLog(Path path, long freshGeneration) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() < HEADER_SIZE;
+            MappedByteBuffer mapped = map(channel);
+            if (fresh) {
+                writeLogHeader(mapped, freshGeneration, nextId);
+            } else if (mapped.getInt(0) != LOG_MAGIC || mapped.getInt(4) != LOG_VERSION) {
+                throw new IOException(path + " is not a durable task log");
+            }
+            logPath = path;
+            logChannel = channel;
+            log = mapped;
+            generation = mapped.getLong(8);
+            nextId = Math.max(nextId, mapped.getLong(16));
+            logEnd = findLogEnd(mapped);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuilds which tasks are live from the whole log.
+     */
+    private void scanLiveness() {
+        live = new BitSet();
+        idBase = -1;
+        liveCount = 0;
+        deadCount = 0;
+        tailSchedules = 0;
+
+        for (int pos = HEADER_SIZE; pos < logEnd; pos += 4 + log.getInt(pos)) {
+            long id = log.getLong(pos + 5);
+            nextId = Math.max(nextId, id + 1);
+            if (log.get(pos + 4) == KIND_SCHEDULE) {
+                // IDs only grow along the log, so the first one is the lowest.
+                if (idBase < 0) idBase = id;
+                markLive(id);
+                liveCount++;
+                if (pos >= indexedTo) tailSchedules++;
+            } else if (idBase >= 0 && isLive(live, idBase, id)) {
+                live.clear((int) (id - idBase));
+                liveCount--;
+                deadCount++;
+            }
+        }
+        if (idBase < 0) idBase = nextId;
+    }
+
+    private void setRun(Run current) {
+        run = current.buffer();
+        runCount = current.count();
+        indexedTo = current.indexedTo();
+    }
+
+    /**
+     * @return An index file name for a generation that is not in use.
+     */
+    private Path newIndexPath(long gen) {
+        for (int n = 0; ; n++) {
+            Path candidate = directory.resolve("tasks-" + gen + "-" + n + ".idx");
+            if (!candidate.equals(indexPath) && !obsolete.contains(candidate) && !Files.exists(candidate)) return candidate;
+        }
+    }
+
+    private Path resolve(String name) throws IOException {
+        Path path = directory.resolve(name);
+        if (path.getFileName() == null || !path.getFileName().toString().equals(name)) {
+            throw new IOException(name + " is not a file in " + directory);
+        }
+        return path;
+    }
+
+    /**
+     * Points the manifest at a log and index. The manifest is never mapped or
+     * kept open, so it can be replaced atomically on every platform.
+     */
+    private void writeManifest(Path logFile, Path indexFile) throws IOException {
+        String content = logFile.getFileName() + "\n" + (indexFile == null ? "" : indexFile.getFileName()) + "\n";
+        Path tmp = directory.resolve(MANIFEST + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) ch.write(bytes);
+            ch.force(true);
+        }
+        Files.move(tmp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes a file that is no longer current, or remembers it for later if
+     * it is still mapped.
+     */
+    private void retire(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            obsolete.add(path);
+        }
+    }
+
+    private void deleteObsolete() {
+        obsolete.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Deletes store files the manifest does not name, left behind by a crash
+     * during maintenance or by files that were still mapped when replaced.
+     */
+    private void deleteStrays() throws IOException {
+        Set<Path> current = indexPath == null ? Set.of(logPath.getFileName())
+                : Set.of(logPath.getFileName(), indexPath.getFileName());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "tasks*.{log,idx,tmp}")) {
+            for (Path file : files) {
+                if (!current.contains(file.getFileName())) retire(file);
+            }
+        }
+    }
+
+    private int reserve(int length) throws IOException {
+        int needed = logEnd + 4 + length;
+        if (needed < 0) throw new IOException("Durable task file is full");
+        if (needed > log.capacity()) log = grow(logChannel, log, needed);
+        return logEnd;
+    }
+
+    private void markLive(long id) {
+        live.set(Math.toIntExact(id - idBase));
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("The durable task log is closed");
+    }
+
+
+    private static boolean isLive(BitSet live, long base, long id) {
+        long bit = id - base;
+        return bit >= 0 && bit < Integer.MAX_VALUE && live.get((int) bit);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Maps a run file, or returns null if it is unreadable or was written for
+     * another generation of the log, for example after a crash during compaction.
+     */
+    private static Run readRun(Path path, long generation, int logEnd) throws IOException {
+        if (!Files.exists(path)) return null;
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE || (size - HEADER_SIZE) % INDEX_ENTRY_SIZE != 0) return null;
+
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long covered = mapped.getLong(16);
+            if (mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != INDEX_VERSION
+                    || mapped.getLong(8) != generation || covered < HEADER_SIZE || covered > logEnd) {
+                return null;
+            }
+            return new Run(mapped, (int) ((size - HEADER_SIZE) / INDEX_ENTRY_SIZE), (int) covered);
+        }
+    }
+
+    private static int findLogEnd(ByteBuffer log) {
+        int pos = HEADER_SIZE;
+        while (pos + 4 <= log.capacity()) {
+            int length = log.getInt(pos);
+            if (length <= 0 || pos + 4 + length > log.capacity()) break;
+            pos += 4 + length;
+        }
+        return pos;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        long size = Math.max(channel.size(), GROW_SIZE);
+        if (size > Integer.MAX_VALUE) throw new IOException("Durable task file is too large to map");
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Maps a larger region of the file. Both mappings share the same pages,
+     * so nothing needs to be flushed first.
+     */
+    private static MappedByteBuffer grow(FileChannel channel, MappedByteBuffer buffer, int needed) throws IOException {
+        long size = Math.max((long) buffer.capacity() * 2, (long) needed + GROW_SIZE);
+        if (size > Integer.MAX_VALUE) size = Integer.MAX_VALUE;
+        if (size < needed) throw new IOException("Durable task file is full");
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static void writeLogHeader(ByteBuffer buffer, long generation, long idFloor) {
+        buffer.putInt(0, LOG_MAGIC);
+        buffer.putInt(4, LOG_VERSION);
+        buffer.putLong(8, generation);
+        buffer.putLong(16, idFloor);
+    }
+
+    /**
+     * @return The position of the first run entry due at or after {@code dueAt}.
+     */
+    private static int firstDueAtOrAfter(ByteBuffer run, int count, long dueAt) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (run.getLong(HEADER_SIZE + mid * INDEX_ENTRY_SIZE) < dueAt) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds the tasks in a stretch of the log that are due in {@code [from, until)}.
+     */
+    private static void scanTail(ByteBuffer log, int start, int end, long from, long until, List<TaskDescriptor> out) {
+        for (int pos = start; pos < end; pos += 4 + log.getInt(pos)) {
+            if (log.get(pos + 4) != KIND_SCHEDULE) continue;
+            long dueAt = log.getLong(pos + 13);
+            if (dueAt >= from && dueAt < until) out.add(readSchedule(log, pos));
+        }
+    }
+
+    private static TaskDescriptor readSchedule(ByteBuffer log, int pos) {
+        int length = log.getInt(pos);
+        long id = log.getLong(pos + 5);
+        long dueAt = log.getLong(pos + 13);
+        byte[] type = new byte[log.getShort(pos + 21)];
+        log.get(pos + 23, type);
+        byte[] payload = new byte[length - SCHEDULE_FIXED_SIZE - type.length];
+        log.get(pos + 23 + type.length, payload);
+        return new TaskDescriptor(id, new String(type, StandardCharsets.UTF_8), payload, dueAt);
+    }
+
+    /**
+     * Writes a sorted run to a new file and flushes it to disk on close.
+     */
+    private static final class RunWriter implements Closeable {
+        private final FileChannel channel;
+        private final DataOutputStream out;
+
+        private RunWriter(Path path, long generation, long indexedTo) throws IOException {
+            Files.deleteIfExists(path);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(generation);
+            out.writeLong(indexedTo);
+        }
+
+        private void write(long[] entry) throws IOException {
+            write(entry[0], entry[1], entry[2]);
+        }
+
+        private void write(long dueAt, long id, long offset) throws IOException {
+            out.writeLong(dueAt);
+            out.writeLong(id);
+            out.writeLong(offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.flush();
+                channel.force(true);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
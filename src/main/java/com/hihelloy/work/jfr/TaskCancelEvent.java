@@ -0,0 +1,19 @@
+package com.hihelloy.work.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a task is cancelled through {@link com.hihelloy.work.PaperRunnable}
+ * or {@link com.hihelloy.work.util.ThreadUtil}.
+ */
+@Name("com.hihelloy.runnables.TaskCancel")
+@Label("Task Cancelled")
+@Category({"Runnables", "Scheduler"})
+@Description("A scheduled task was cancelled")
+@StackTrace(false)
+public class TaskCancelEvent extends TaskEvent {
+}
@@ -0,0 +1,25 @@
+package com.hihelloy.work.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Fields shared by every scheduler event.
+ */
+abstract class TaskEvent extends Event {
+
+    @Label("Task Class")
+    String taskClass;
+
+    @Label("Plugin")
+    String plugin;
+
+    @Label("Scheduler Type")
+    String schedulerType;
+
+    @Label("Target")
+    String target;
+
+    @Label("Task ID")
+    int taskId;
+}
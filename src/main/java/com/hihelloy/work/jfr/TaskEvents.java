@@ -0,0 +1,156 @@
+package com.hihelloy.work.jfr;
+
+import com.hihelloy.work.SchedulerType;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Emits the Java Flight Recorder events for scheduler activity.<br><br>
+ *
+ * Every method checks whether Flight Recorder has been started before
+ * creating an event, so with no recording running the cost is a single
+ * static flag read. Targets are only formatted into strings once an event
+ * is actually going to be committed.
+ */
+public final class TaskEvents {
+
+    private TaskEvents() {
+    }
+
+    /**
+     * Holds the event types, so they are only registered once Flight Recorder is in use.
+     */
+    private static final class Types {
+        private static final EventType SCHEDULE = EventType.getEventType(TaskScheduleEvent.class);
+        private static final EventType EXECUTION = EventType.getEventType(TaskExecutionEvent.class);
+        private static final EventType CANCEL = EventType.getEventType(TaskCancelEvent.class);
+    }
+
+    /**
+     * @return Whether a running recording has schedule, execution or cancel
+     *         events enabled. Tasks scheduled while this is false are not wrapped
+     *         by {@link #track(Runnable, Plugin, SchedulerType, Object, long, long)},
+     *         so they stay untracked even if a recording starts later.
+     */
+    public static boolean isTracking() {
+        return FlightRecorder.isInitialized()
+                && (Types.SCHEDULE.isEnabled() || Types.EXECUTION.isEnabled() || Types.CANCEL.isEnabled());
+    }
+
+    /**
+     * Records that a task was handed to a scheduler.
+     * @param task The task, used for its class name.
+     * @param plugin The plugin the task is scheduled under.
+     * @param type The scheduler the task was handed to.
+     * @param target The {@link Location} or {@link Entity} the task is bound to, or null.
+     * @param taskId The task ID, or -1 if the task has none.
+     * @param delayTicks The initial delay in ticks.
+     * @param periodTicks The repeat period in ticks, or -1 for one-shot tasks.
+     */
+    public static void scheduled(Object task, Plugin plugin, SchedulerType type, Object target,
+                                 int taskId, long delayTicks, long periodTicks) {
+        if (!FlightRecorder.isInitialized()) return;
+        TaskScheduleEvent event = new TaskScheduleEvent();
+        if (!event.isEnabled()) return;
+
+        fill(event, task, plugin, type, target, taskId);
+        event.delayTicks = delayTicks;
+        event.periodTicks = periodTicks;
+        event.commit();
+    }
+
+    /**
+     * Starts timing a task execution. Pass the result to
+     * {@link #endExecution(TaskExecutionEvent, Object, Plugin, SchedulerType, Object, int)}
+     * once the task body returns.
+     * @return The started event, or null if Flight Recorder is not in use.
+     */
+    public static TaskExecutionEvent beginExecution() {
+        if (!FlightRecorder.isInitialized()) return null;
+        TaskExecutionEvent event = new TaskExecutionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing a task execution and commits it if it passed the threshold.
+     */
+    public static void endExecution(TaskExecutionEvent event, Object task, Plugin plugin, SchedulerType type,
+                                    Object target, int taskId) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+
+        fill(event, task, plugin, type, target, taskId);
+        event.commit();
+    }
+
+    /**
+     * Records that a task was cancelled.
+     */
+    public static void cancelled(Object task, Plugin plugin, SchedulerType type, Object target, int taskId) {
+        cancelled(task == null ? null : task.getClass(), plugin, type, target, taskId);
+    }
+
+    /**
+     * Records that a task was cancelled, for callers that only kept the task's class.
+     */
+    public static void cancelled(Class<?> taskClass, Plugin plugin, SchedulerType type, Object target, int taskId) {
+        if (!FlightRecorder.isInitialized()) return;
+        TaskCancelEvent event = new TaskCancelEvent();
+        if (!event.isEnabled()) return;
+
+        fill(event, taskClass, plugin, type, target, taskId);
+        event.commit();
+    }
+
+    /**
+     * Records the schedule event for a plain {@link Runnable} and wraps it so
+     * that each run is recorded as an execution event. Returns the runnable
+     * unchanged when nothing is recording, see {@link #isTracking()}.
+     * @return The runnable to hand to the scheduler in place of {@code runnable}.
+     */
+    public static Runnable track(Runnable runnable, Plugin plugin, SchedulerType type, Object target,
+                                 long delayTicks, long periodTicks) {
+        if (!isTracking()) return runnable;
+        scheduled(runnable, plugin, type, target, -1, delayTicks, periodTicks);
+        return () -> {
+            TaskExecutionEvent event = beginExecution();
+            try {
+                runnable.run();
+            } finally {
+                endExecution(event, runnable, plugin, type, target, -1);
+            }
+        };
+    }
+
+    private static void fill(TaskEvent event, Object task, Plugin plugin, SchedulerType type, Object target,
+                             int taskId) {
+        fill(event, task == null ? null : task.getClass(), plugin, type, target, taskId);
+    }
+
+    private static void fill(TaskEvent event, Class<?> taskClass, Plugin plugin, SchedulerType type, Object target,
+                             int taskId) {
+        event.taskClass = taskClass == null ? null : taskClass.getName();
+        event.plugin = plugin == null ? null : plugin.getName();
+        event.schedulerType = type == null ? null : type.name();
+        event.target = describe(target);
+        event.taskId = taskId;
+    }
+
+    private static String describe(Object target) {
+        if (target instanceof Entity entity) {
+            return entity.getType() + " " + entity.getUniqueId();
+        }
+        if (target instanceof Location loc) {
+            World world = loc.getWorld();
+            return (world == null ? "?" : world.getName())
+                    + " [" + (loc.getBlockX() >> 4) + ", " + (loc.getBlockZ() >> 4) + "]";
+        }
+        return target == null ? null : target.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.hihelloy.work.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Spans a single execution of a task body, so the event start and end are the
+ * task start and end. Only executions longer than the threshold are recorded;
+ * override it with {@code com.hihelloy.runnables.TaskExecution#threshold}.
+ */
+@Name("com.hihelloy.runnables.TaskExecution")
+@Label("Task Execution")
+@Category({"Runnables", "Scheduler"})
+@Description("A scheduled task body ran")
+@StackTrace(false)
+@Threshold("1 ms")
+public class TaskExecutionEvent extends TaskEvent {
+}
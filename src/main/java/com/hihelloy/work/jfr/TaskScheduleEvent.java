@@ -0,0 +1,25 @@
+package com.hihelloy.work.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a task is handed to a scheduler.
+ */
+@Name("com.hihelloy.runnables.TaskSchedule")
+@Label("Task Scheduled")
+@Category({"Runnables", "Scheduler"})
+@Description("A task was handed to a Paper or Folia scheduler")
+@StackTrace(false)
+public class TaskScheduleEvent extends TaskEvent {
+
+    @Label("Delay (ticks)")
+    long delayTicks;
+
+    @Label("Period (ticks)")
+    @Description("Repeat period in ticks, or -1 for one-shot tasks")
+    long periodTicks;
+}
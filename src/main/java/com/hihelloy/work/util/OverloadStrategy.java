@@ -0,0 +1,17 @@
+package com.hihelloy.work.util;
+
+/**
+ * What a {@link PluginThreadUtil} does with a task that would exceed its
+ * {@link SchedulingQuota}.
+ */
+public enum OverloadStrategy {
+    /** Hold the task back and schedule it once there is room again. */
+    DEFER,
+    /** Silently discard the task. */
+    DROP,
+    /**
+     * Throw a {@link java.util.concurrent.RejectedExecutionException} from the
+     * scheduling call. Tasks that were already accepted are deferred instead.
+     */
+    REJECT
+}
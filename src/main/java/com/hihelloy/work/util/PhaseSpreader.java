@@ -0,0 +1,249 @@
+package com.hihelloy.work.util;
+
+import com.hihelloy.work.PaperRunnable;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Spreads the first run of repeating tasks across the phases of their period
+ * so that thousands of timers with the same period do not all fire on the
+ * same tick.<br><br>
+ *
+ * Timers are grouped by period, and on Folia also by region, since every
+ * region ticks on its own thread. On other servers all regions tick on the
+ * main thread, so they share one group per period. Each group keeps a count of how
+ * many timers fire on each phase, and a new timer is pushed back to the least
+ * loaded phase. The period itself is never changed, only the initial delay,
+ * and never by more than one period. When a timer is cancelled its phase is
+ * released, so new timers fill the gaps it leaves behind. A slot bound to
+ * its task with {@link Slot#bind(BooleanSupplier)} is also released once the
+ * task turns out to be cancelled, however that happened, so the counts stay
+ * accurate when timers are cancelled through their own handles or by a
+ * plugin being disabled.<br><br>
+ *
+ * Phases are measured against the server's tick counter. On Folia, where
+ * regions each tick on their own, a wall clock of 50ms ticks is used instead.
+ */
+public final class PhaseSpreader {
+
+    /** Regions are approximated as square groups of 16x16 chunks, Folia's default section size. */
+    private static final int REGION_SHIFT = 4;
+    /** Long periods are split into at most this many phase buckets. */
+    private static final int MAX_PHASES = 128;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long CLOCK_ORIGIN = System.nanoTime();
+
+    private static final boolean FOLIA = PaperRunnable.isFolia();
+
+    private static final Object GLOBAL_REGION = "global";
+    /** Entities owned by another region on Folia, whose location cannot be read safely. */
+    private static final Object UNOWNED_ENTITY_REGION = "entity";
+
+    private static final Map<Bucket, Phases> buckets = new ConcurrentHashMap<>();
+
+    private PhaseSpreader() {
+    }
+
+    /**
+     * A phase reserved by one timer. Call {@link #release()} once the timer
+     * stops so the phase can be reused.
+     */
+    public static final class Slot {
+        private final Bucket bucket;
+        private final int phase;
+        private final long delay;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile BooleanSupplier cancelled;
+
+        private Slot(Bucket bucket, int phase, long delay) {
+            this.bucket = bucket;
+            this.phase = phase;
+            this.delay = delay;
+        }
+
+        /**
+         * @return The initial delay in ticks to schedule the timer with.
+         */
+        public long getDelay() {
+            return delay;
+        }
+
+        /**
+         * Ties this slot to its task, so the slot is released once the task
+         * is cancelled even if {@link #release()} is never called.
+         * @param cancelled Whether the task has been cancelled.
+         */
+        public void bind(BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Ties this slot to its task's handle without keeping the handle, or
+         * anything its task captures, reachable. A handle that has been
+         * garbage collected counts as cancelled.
+         * @param task The handle the timer was scheduled with.
+         * @param cancelled Whether a handle has been cancelled. Must not capture {@code task}.
+         */
+        public <T> void bind(T task, Predicate<? super T> cancelled) {
+            WeakReference<T> handle = new WeakReference<>(task);
+            bind(() -> {
+                T t = handle.get();
+                return t == null || cancelled.test(t);
+            });
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) return;
+            cancelled = null;
+            buckets.computeIfPresent(bucket, (b, phases) -> phases.remove(this) ? null : phases);
+        }
+
+        private boolean isDead() {
+            BooleanSupplier check = cancelled;
+            return check != null && check.getAsBoolean();
+        }
+    }
+
+    /**
+     * The slots of one region and period, and how many fire on each phase.
+     */
+    private static final class Phases {
+        private final int[] load;
+        private final Set<Slot> slots = new HashSet<>();
+        private int reservesSinceSweep;
+
+        private Phases(int phases) {
+            this.load = new int[phases];
+        }
+
+        private void add(Slot slot) {
+            slots.add(slot);
+            load[slot.phase]++;
+        }
+
+        /**
+         * @return Whether the bucket is now empty.
+         */
+        private boolean remove(Slot slot) {
+            if (slots.remove(slot)) load[slot.phase]--;
+            return slots.isEmpty();
+        }
+
+        /**
+         * Releases the slots of cancelled tasks. Runs once per half the slot
+         * count of reservations, so each reservation pays a constant amount.
+         */
+        private void sweepIfDue() {
+            if (++reservesSinceSweep < Math.max(16, slots.size() / 2)) return;
+            reservesSinceSweep = 0;
+
+            Iterator<Slot> it = slots.iterator();
+            while (it.hasNext()) {
+                Slot slot = it.next();
+                if (!slot.isDead() || !slot.released.compareAndSet(false, true)) continue;
+                slot.cancelled = null;
+                it.remove();
+                load[slot.phase]--;
+            }
+        }
+    }
+
+    /**
+     * Reserves the least loaded phase for a new timer.
+     * @param region The region key from {@link #regionOf(Location)} or
+     *               {@link #regionOf(Entity)}, or null for global and async timers.
+     * @param delay The requested initial delay in ticks.
+     * @param period The timer period in ticks.
+     * @return The reserved slot, or null if the period is too short to spread.
+     */
+    public static Slot reserve(Object region, long delay, long period) {
+        if (period <= 1) return null;
+
+        Bucket bucket = new Bucket(region == null ? GLOBAL_REGION : region, period);
+        int phases = (int) Math.min(period, MAX_PHASES);
+        long width = (period + phases - 1) / phases;
+        long natural = Math.floorMod(currentTick() + delay, period);
+        int naturalPhase = (int) (natural / width);
+
+        Slot[] result = new Slot[1];
+        buckets.compute(bucket, (b, state) -> {
+            if (state == null) state = new Phases(phases);
+            state.sweepIfDue();
+            int[] load = state.load;
+
+            int best = naturalPhase;
+            for (int i = 1; i < phases; i++) {
+                int candidate = (naturalPhase + i) % phases;
+                if (load[candidate] < load[best]) best = candidate;
+            }
+
+            long shift = best == naturalPhase ? 0 : Math.floorMod(best * width - natural, period);
+            result[0] = new Slot(b, best, delay + shift);
+            state.add(result[0]);
+            return state;
+        });
+        return result[0];
+    }
+
+    /**
+     * @return The region key for a location. Outside Folia this is the
+     *         global key, since every region ticks on the main thread.
+     */
+    public static Object regionOf(Location location) {
+        if (!FOLIA) return GLOBAL_REGION;
+        World world = location.getWorld();
+        return new Region(world == null ? null : world.getUID(),
+                location.getBlockX() >> (4 + REGION_SHIFT),
+                location.getBlockZ() >> (4 + REGION_SHIFT));
+    }
+
+    /**
+     * @return The region key for the location the entity is currently in. On
+     *         Folia, entities owned by another region share one key, since their
+     *         location cannot be read from this thread. Outside Folia this is
+     *         the global key.
+     */
+    public static Object regionOf(Entity entity) {
+        if (!FOLIA) return GLOBAL_REGION;
+        if (!Bukkit.isOwnedByCurrentRegion(entity)) return UNOWNED_ENTITY_REGION;
+        return regionOf(entity.getLocation());
+    }
+
+    /**
+     * Returns how many timers fire on each phase for a region and period.
+     * @return A copy of the phase counts, or an empty array if there are none.
+     */
+    public static int[] getLoad(Object region, long period) {
+        int[][] load = {new int[0]};
+        buckets.computeIfPresent(new Bucket(region == null ? GLOBAL_REGION : region, period), (b, phases) -> {
+            load[0] = phases.load.clone();
+            return phases;
+        });
+        return load[0];
+    }
+
+    private static long currentTick() {
+        if (!FOLIA) return Bukkit.getCurrentTick();
+        return (System.nanoTime() - CLOCK_ORIGIN) / TICK_NANOS;
+    }
+
+    private record Bucket(Object region, long period) {
+    }
+
+    private record Region(UUID world, int x, int z) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.hihelloy.work.util;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Applies the {@link SchedulingQuota}s the server operator set in Runnables'
+ * config, and forgets a plugin's {@link PluginThreadUtil} when the plugin is
+ * disabled so disabled or reloaded plugins are not kept in memory.<br><br>
+ *
+ * Quotas are read from the {@code quotas} section, by plugin name:
+ * <pre>{@code
+ * quotas:
+ *   SomePlugin:
+ *     max-pending-tasks: 5000
+ *     max-async-concurrency: 4
+ *     tick-budget-ms: 5
+ *     strategy: DEFER
+ * }</pre>
+ * A limit that is left out is unlimited, and the strategy defaults to
+ * {@link OverloadStrategy#DEFER}. An operator quota replaces the one the
+ * plugin asks for with {@link PluginThreadUtil#setQuota(SchedulingQuota)}.
+ */
+public final class PluginQuotas implements Listener {
+
+    private final Logger logger;
+
+    public PluginQuotas(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Replaces the operator quotas with the ones in a config section. Invalid
+     * entries are logged and skipped.
+     * @param section The {@code quotas} section, or null if there is none.
+     */
+    public void load(ConfigurationSection section) {
+        Map<String, SchedulingQuota> quotas = new HashMap<>();
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                ConfigurationSection entry = section.getConfigurationSection(name);
+                if (entry == null) {
+                    logger.warning("Ignoring the scheduling quota for " + name + ": it is not a section");
+                    continue;
+                }
+                try {
+                    quotas.put(name, parse(entry));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Ignoring the scheduling quota for " + name + ": " + e.getMessage());
+                }
+            }
+        }
+        PluginThreadUtil.setOperatorQuotas(quotas);
+        if (!quotas.isEmpty()) logger.info("Loaded scheduling quotas for " + quotas.size() + " plugin(s)");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        PluginThreadUtil.release(event.getPlugin());
+    }
+
+
+    private static SchedulingQuota parse(ConfigurationSection entry) {
+        int maxPending = entry.getInt("max-pending-tasks", Integer.MAX_VALUE);
+        int maxAsync = entry.getInt("max-async-concurrency", Integer.MAX_VALUE);
+        long tickBudgetNanos = entry.contains("tick-budget-ms")
+                ? (long) (entry.getDouble("tick-budget-ms", 0) * TimeUnit.MILLISECONDS.toNanos(1))
+                : Long.MAX_VALUE;
+        String name = entry.getString("strategy", OverloadStrategy.DEFER.name());
+        OverloadStrategy strategy;
+        try {
+            strategy = OverloadStrategy.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown strategy " + name);
+        }
+        return new SchedulingQuota(maxPending, maxAsync, tickBudgetNanos, strategy);
+    }
+}
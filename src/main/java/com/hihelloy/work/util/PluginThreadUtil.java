@@ -0,0 +1,537 @@
+package com.hihelloy.work.util;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ThreadUtil} bound to a single plugin. Tasks are scheduled under
+ * that plugin instead of under Runnables, and are held to the plugin's
+ * {@link SchedulingQuota} so one misbehaving plugin cannot flood the
+ * schedulers.<br><br>
+ *
+ * The pending limit is checked when a task is scheduled. The async
+ * concurrency limit and the per-tick budget are checked when a task is about
+ * to run; a one-shot task over the limit is moved to the next tick (or dropped
+ * with {@link OverloadStrategy#DROP}), and a timer skips that run. All
+ * counters are striped, so the checks stay cheap under contention.<br><br>
+ *
+ * A task's pending slot is freed however it ends: when it runs, when its
+ * entity is removed, or when it is cancelled. Handles cancelled without going
+ * through {@link #cancelTimerTask(Object)}, including by the server when the
+ * plugin is disabled, are found by a sweep that runs when the pending limit
+ * is reached and every second while tasks are deferred.<br><br>
+ *
+ * Get an instance with {@link #of(Plugin)}, {@link ThreadUtil#forPlugin(Plugin)}
+ * or the {@link ThreadUtilProvider} service. A quota the server operator set
+ * for the plugin in Runnables' config replaces the one the plugin asks for,
+ * and the instance is forgotten when the plugin is disabled.
+ */
+public final class PluginThreadUtil {
+
+    private static final Map<Plugin, PluginThreadUtil> instances = new ConcurrentHashMap<>();
+    private static volatile Map<String, SchedulingQuota> operatorQuotas = Map.of();
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long RECLAIM_INTERVAL_TICKS = 20L;
+
+    private final Plugin plugin;
+    private volatile SchedulingQuota requestedQuota = SchedulingQuota.UNLIMITED;
+    private volatile SchedulingQuota quota;
+
+    private final LongAdder pending = new LongAdder();
+    private final AtomicInteger asyncRunning = new AtomicInteger();
+    private final LongAdder tickNanos = new LongAdder();
+    private volatile long tickWindow;
+    private final Queue<Runnable> deferredSubmits = new ConcurrentLinkedQueue<>();
+    private final Map<Object, Pending> handles = new ConcurrentHashMap<>();
+    private final AtomicBoolean reclaimScheduled = new AtomicBoolean();
+    private volatile long lastReclaim;
+
+    private final LongAdder deferredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * The handle returned for a timer that was deferred by its quota. It can
+     * be passed to {@link #cancelTimerTask(Object)} like any other timer.
+     */
+    private static final class DeferredTimer {
+        private volatile Object task;
+        private volatile boolean cancelled;
+    }
+
+    /**
+     * One task's pending slot. It is freed at most once, however the task
+     * ends, and stops tracking the task's handle when it is.
+     */
+    private final class Pending extends AtomicBoolean {
+        private volatile Object task;
+
+        /**
+         * Starts tracking the handle the task was scheduled with, so cancelling
+         * it frees the slot.
+         * @return The handle.
+         */
+        Object bind(Object task) {
+            if (task == null) {
+                finish();
+                return null;
+            }
+            this.task = task;
+            handles.put(task, this);
+            if (get()) handles.remove(task, this);
+            return task;
+        }
+
+        void finish() {
+            if (!compareAndSet(false, true)) return;
+            Object scheduled = task;
+            if (scheduled != null) handles.remove(scheduled, this);
+            taskFinished();
+        }
+    }
+
+    private PluginThreadUtil(Plugin plugin) {
+        this.plugin = plugin;
+        this.quota = operatorQuotas.getOrDefault(plugin.getName(), requestedQuota);
+    }
+
+    /**
+     * @return The instance for a plugin, created without limits if it does not exist yet.
+     */
+    public static PluginThreadUtil of(Plugin plugin) {
+        Objects.requireNonNull(plugin, "plugin");
+        return instances.computeIfAbsent(plugin, PluginThreadUtil::new);
+    }
+
+    static void release(Plugin plugin) {
+        instances.remove(plugin);
+    }
+
+    /**
+     * Replaces the quotas set by the server operator, by plugin name, and
+     * applies them to existing instances.
+     */
+    static void setOperatorQuotas(Map<String, SchedulingQuota> quotas) {
+        operatorQuotas = Map.copyOf(quotas);
+        for (PluginThreadUtil threads : instances.values()) {
+            threads.applyQuota();
+        }
+    }
+
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * @return The quota in effect, which is the server operator's if one is set.
+     */
+    public SchedulingQuota getQuota() {
+        return quota;
+    }
+
+    /**
+     * Sets the quota the plugin asks for. It only takes effect while the
+     * server operator has not set one for the plugin.
+     */
+    public void setQuota(SchedulingQuota quota) {
+        this.requestedQuota = Objects.requireNonNull(quota, "quota");
+        applyQuota();
+    }
+
+    private void applyQuota() {
+        quota = operatorQuotas.getOrDefault(plugin.getName(), requestedQuota);
+        drainDeferred();
+    }
+
+    /**
+     * @return The number of tasks scheduled but not yet run, including live timers.
+     */
+    public long getPendingCount() {
+        return pending.sum();
+    }
+
+    public int getAsyncRunningCount() {
+        return asyncRunning.get();
+    }
+
+    /**
+     * @return How many times a task was held back or moved to a later tick.
+     */
+    public long getDeferredCount() {
+        return deferredCount.sum();
+    }
+
+    /**
+     * @return How many tasks, or timer runs, were discarded.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+
+    /**
+     * @see ThreadUtil#ensureEntity(Entity, Runnable)
+     */
+    public void ensureEntity(Entity entity, Runnable runnable) {
+        submit(() -> scheduleEntity(entity, runnable, 0));
+    }
+
+    /**
+     * @see ThreadUtil#ensureEntityDelay(Entity, Runnable, long)
+     */
+    public void ensureEntityDelay(Entity entity, Runnable runnable, long delay) {
+        submit(() -> scheduleEntity(entity, runnable, delay));
+    }
+
+    /**
+     * @see ThreadUtil#ensureEntityTimer(Entity, Runnable, long, long)
+     */
+    public Object ensureEntityTimer(Entity entity, Runnable runnable, long delay, long repeat) {
+        return submitTimer(retired -> ThreadUtil.ensureEntityTimer(plugin, entity, repeating(runnable, false), delay, repeat, retired));
+    }
+
+    /**
+     * @see ThreadUtil#ensureLocation(Location, Runnable)
+     */
+    public void ensureLocation(Location location, Runnable runnable) {
+        submit(() -> scheduleLocation(location, runnable, 0));
+    }
+
+    /**
+     * @see ThreadUtil#ensureLocationDelay(Location, Runnable, long)
+     */
+    public void ensureLocationDelay(Location location, Runnable runnable, long delay) {
+        submit(() -> scheduleLocation(location, runnable, delay));
+    }
+
+    /**
+     * @see ThreadUtil#ensureLocationTimer(Location, Runnable, long, long)
+     */
+    public Object ensureLocationTimer(Location location, Runnable runnable, long delay, long repeat) {
+        return submitTimer(retired -> ThreadUtil.ensureLocationTimer(plugin, location, repeating(runnable, false), delay, repeat));
+    }
+
+    /**
+     * @see ThreadUtil#runAsync(Runnable)
+     */
+    public void runAsync(Runnable runnable) {
+        submit(() -> scheduleAsync(runnable, 0));
+    }
+
+    /**
+     * @see ThreadUtil#runAsyncLater(Runnable, long)
+     */
+    public void runAsyncLater(Runnable runnable, long delay) {
+        submit(() -> scheduleAsync(runnable, delay));
+    }
+
+    /**
+     * @see ThreadUtil#runAsyncTimer(Runnable, long, long)
+     */
+    public Object runAsyncTimer(Runnable runnable, long delay, long repeat) {
+        return submitTimer(retired -> ThreadUtil.runAsyncTimer(plugin, repeating(runnable, true), delay, repeat));
+    }
+
+    /**
+     * @see ThreadUtil#runSync(Runnable)
+     */
+    public void runSync(Runnable runnable) {
+        submit(() -> scheduleSync(runnable, 0));
+    }
+
+    /**
+     * @return The task object, or null if the task was deferred or dropped by the quota.
+     * @see ThreadUtil#runSyncLater(Runnable, long)
+     */
+    public Object runSyncLater(Runnable runnable, long delay) {
+        return submit(() -> scheduleSync(runnable, delay));
+    }
+
+    /**
+     * @see ThreadUtil#runSyncTimer(Runnable, long, long)
+     */
+    public Object runSyncTimer(Runnable runnable, long delay, long repeat) {
+        return submitTimer(retired -> ThreadUtil.runSyncTimer(plugin, repeating(runnable, false), delay, repeat));
+    }
+
+    /**
+     * Cancels a timer created by this instance and frees its pending slot.
+     * @see ThreadUtil#cancelTimerTask(Object)
+     */
+    public boolean cancelTimerTask(Object task) {
+        if (task instanceof DeferredTimer deferred) {
+            deferred.cancelled = true;
+            Object scheduled = deferred.task;
+            return scheduled == null || cancelTimerTask(scheduled);
+        }
+
+        Pending slot = task == null ? null : handles.get(task);
+        if (slot != null) slot.finish();
+        return ThreadUtil.cancelTimerTask(task);
+    }
+
+    /**
+     * @see ThreadUtil#isTaskCancelled(Object)
+     */
+    public boolean isTaskCancelled(Object task) {
+        if (task instanceof DeferredTimer deferred) {
+            Object scheduled = deferred.task;
+            return deferred.cancelled || (scheduled != null && ThreadUtil.isTaskCancelled(scheduled));
+        }
+        return ThreadUtil.isTaskCancelled(task);
+    }
+
+
+    private Object submit(Supplier<Object> schedule) {
+        if (hasRoom()) {
+            pending.increment();
+            return schedule.get();
+        }
+
+        switch (quota.strategy()) {
+            case DEFER -> {
+                deferredCount.increment();
+                deferredSubmits.add(schedule::get);
+                scheduleReclaim();
+            }
+            case DROP -> droppedCount.increment();
+            case REJECT -> reject();
+        }
+        return null;
+    }
+
+    /**
+     * @param schedule Schedules the timer, given a callback to run if it is
+     *                 retired without being cancelled.
+     */
+    private Object submitTimer(Function<Runnable, Object> schedule) {
+        if (hasRoom()) {
+            pending.increment();
+            return registerTimer(schedule);
+        }
+
+        switch (quota.strategy()) {
+            case DEFER -> {
+                DeferredTimer deferred = new DeferredTimer();
+                deferredCount.increment();
+                deferredSubmits.add(() -> {
+                    if (deferred.cancelled) {
+                        taskFinished();
+                        return;
+                    }
+                    deferred.task = registerTimer(schedule);
+                    if (deferred.cancelled) cancelTimerTask(deferred.task);
+                });
+                scheduleReclaim();
+                return deferred;
+            }
+            case DROP -> droppedCount.increment();
+            case REJECT -> reject();
+        }
+        return null;
+    }
+
+    private boolean hasRoom() {
+        int max = quota.maxPendingTasks();
+        if (max == Integer.MAX_VALUE || pending.sum() < max) return true;
+
+        long now = System.nanoTime();
+        if (now - lastReclaim < TICK_NANOS) return false;
+        lastReclaim = now;
+        reclaimCancelled();
+        return pending.sum() < max;
+    }
+
+    private void reject() {
+        rejectedCount.increment();
+        throw new RejectedExecutionException(plugin.getName() + " has more than "
+                + quota.maxPendingTasks() + " pending tasks");
+    }
+
+    private Object registerTimer(Function<Runnable, Object> schedule) {
+        Pending slot = new Pending();
+        return slot.bind(schedule.apply(slot::finish));
+    }
+
+    /**
+     * Frees the slots of tasks whose handles were cancelled without going
+     * through this instance.
+     */
+    private void reclaimCancelled() {
+        for (Map.Entry<Object, Pending> entry : handles.entrySet()) {
+            if (ThreadUtil.isTaskCancelled(entry.getKey())) entry.getValue().finish();
+        }
+    }
+
+    /**
+     * Sweeps for cancelled handles every second while tasks are deferred, so
+     * deferred tasks still start if nothing else frees a slot. Once the plugin
+     * is disabled, its deferred tasks are discarded.
+     */
+    private void scheduleReclaim() {
+        if (!reclaimScheduled.compareAndSet(false, true)) return;
+
+        ThreadUtil.runAsyncLater(() -> {
+            reclaimScheduled.set(false);
+            if (!plugin.isEnabled()) deferredSubmits.clear();
+            reclaimCancelled();
+            if (!deferredSubmits.isEmpty()) scheduleReclaim();
+        }, RECLAIM_INTERVAL_TICKS);
+    }
+
+    private void taskFinished() {
+        pending.decrement();
+        drainDeferred();
+    }
+
+    private void drainDeferred() {
+        if (deferredSubmits.isEmpty()) return;
+
+        int max = quota.maxPendingTasks();
+        while (pending.sum() < max) {
+            Runnable next = deferredSubmits.poll();
+            if (next == null) return;
+            pending.increment();
+            next.run();
+        }
+    }
+
+
+    private Object scheduleEntity(Entity entity, Runnable runnable, long delay) {
+        Pending slot = new Pending();
+        Runnable task = once(slot, runnable, false, () -> retry(() -> scheduleEntity(entity, runnable, 1)));
+        if (delay <= 0) {
+            ThreadUtil.ensureEntity(plugin, entity, task, slot::finish);
+        } else {
+            ThreadUtil.ensureEntityDelay(plugin, entity, task, delay, slot::finish);
+        }
+        return null;
+    }
+
+    private Object scheduleLocation(Location location, Runnable runnable, long delay) {
+        Runnable task = once(new Pending(), runnable, false, () -> retry(() -> scheduleLocation(location, runnable, 1)));
+        if (delay <= 0) {
+            ThreadUtil.ensureLocation(plugin, location, task);
+        } else {
+            ThreadUtil.ensureLocationDelay(plugin, location, task, delay);
+        }
+        return null;
+    }
+
+    private Object scheduleAsync(Runnable runnable, long delay) {
+        Runnable task = once(new Pending(), runnable, true, () -> retry(() -> scheduleAsync(runnable, 1)));
+        if (delay <= 0) {
+            ThreadUtil.runAsync(plugin, task);
+        } else {
+            ThreadUtil.runAsyncLater(plugin, task, delay);
+        }
+        return null;
+    }
+
+    private Object scheduleSync(Runnable runnable, long delay) {
+        Pending slot = new Pending();
+        Runnable task = once(slot, runnable, false, () -> retry(() -> scheduleSync(runnable, 1)));
+        if (delay <= 0) {
+            ThreadUtil.runSync(plugin, task);
+            return null;
+        }
+        return slot.bind(ThreadUtil.runSyncLater(plugin, task, delay));
+    }
+
+    /**
+     * Moves an already accepted task to the next tick. It keeps its place
+     * under the pending limit, so this never rejects.
+     */
+    private void retry(Runnable reschedule) {
+        deferredCount.increment();
+        pending.increment();
+        reschedule.run();
+    }
+
+    private Runnable once(Pending slot, Runnable runnable, boolean async, Runnable retry) {
+        return () -> {
+            slot.finish();
+            execute(runnable, async, retry);
+        };
+    }
+
+    private Runnable repeating(Runnable runnable, boolean async) {
+        return () -> execute(runnable, async, null);
+    }
+
+    /**
+     * Runs a task if the async concurrency limit and per-tick budget allow it.
+     * @param retry Moves the task to the next tick, or null to skip this run.
+     */
+    private void execute(Runnable runnable, boolean async, Runnable retry) {
+        SchedulingQuota q = quota;
+
+        if (async) {
+            if (asyncRunning.incrementAndGet() > q.maxAsyncConcurrency()) {
+                asyncRunning.decrementAndGet();
+                overloaded(q, retry);
+                return;
+            }
+            try {
+                runnable.run();
+            } finally {
+                asyncRunning.decrementAndGet();
+            }
+            return;
+        }
+
+        if (!q.hasTickBudget()) {
+            runnable.run();
+            return;
+        }
+        if (tickNanosUsed() >= q.tickBudgetNanos()) {
+            overloaded(q, retry);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            tickNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void overloaded(SchedulingQuota q, Runnable retry) {
+        if (retry == null || q.strategy() == OverloadStrategy.DROP) {
+            droppedCount.increment();
+            return;
+        }
+        retry.run();
+    }
+
+    /**
+     * Time used by this plugin's synchronous tasks in the current 50ms window.
+     * Folia regions tick independently, so a wall clock window stands in for the tick.
+     */
+    private long tickNanosUsed() {
+        long window = System.nanoTime() / TICK_NANOS;
+        if (window != tickWindow) {
+            tickWindow = window;
+            tickNanos.reset();
+        }
+        return tickNanos.sum();
+    }
+}
@@ -0,0 +1,40 @@
+package com.hihelloy.work.util;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on how much scheduling a single plugin may do through its
+ * {@link PluginThreadUtil}.
+ * @param maxPendingTasks How many tasks may be scheduled but not yet run. Live timers count as pending.
+ * @param maxAsyncConcurrency How many async tasks may run at the same time.
+ * @param tickBudgetNanos How much time the plugin's synchronous tasks may use per tick, across all regions.
+ * @param strategy What to do with tasks over the limits.
+ */
+public record SchedulingQuota(int maxPendingTasks, int maxAsyncConcurrency, long tickBudgetNanos,
+                              OverloadStrategy strategy) {
+
+    /** No limits at all, the default for every plugin. */
+    public static final SchedulingQuota UNLIMITED =
+            new SchedulingQuota(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, OverloadStrategy.DEFER);
+
+    public SchedulingQuota {
+        if (maxPendingTasks <= 0) throw new IllegalArgumentException("maxPendingTasks must be positive");
+        if (maxAsyncConcurrency <= 0) throw new IllegalArgumentException("maxAsyncConcurrency must be positive");
+        if (tickBudgetNanos <= 0) throw new IllegalArgumentException("tickBudgetNanos must be positive");
+        Objects.requireNonNull(strategy, "strategy");
+    }
+
+    /**
+     * Creates a quota with the per-tick budget given in milliseconds.
+     */
+    public static SchedulingQuota of(int maxPendingTasks, int maxAsyncConcurrency, double tickBudgetMillis,
+                                     OverloadStrategy strategy) {
+        return new SchedulingQuota(maxPendingTasks, maxAsyncConcurrency,
+                (long) (tickBudgetMillis * TimeUnit.MILLISECONDS.toNanos(1)), strategy);
+    }
+
+    public boolean hasTickBudget() {
+        return tickBudgetNanos != Long.MAX_VALUE;
+    }
+}
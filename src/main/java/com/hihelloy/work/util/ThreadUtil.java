@@ -3,12 +3,18 @@ package com.hihelloy.work.util;
 
 import com.hihelloy.work.PaperRunnable;
 import com.hihelloy.work.Runnables;
+import com.hihelloy.work.SchedulerType;
+import com.hihelloy.work.jfr.TaskEvents;
 import io.papermc.paper.threadedregions.scheduler.RegionScheduler;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -16,6 +22,38 @@ import java.util.concurrent.TimeUnit;
  * Ensures compatibility between Folia and non-Folia servers. */
 public class ThreadUtil {
 
+    private static volatile boolean spreadPhases;
+    private static final Map<Object, Timer> timers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * What {@link #cancelTimerTask(Object)} needs to know about a timer handle.
+     * Only the task's class is kept, since a runnable that holds its own handle
+     * would otherwise keep the weak key alive.
+     */
+    private record Timer(Class<?> taskClass, Plugin plugin, SchedulerType type, Object target, PhaseSpreader.Slot slot) {
+    }
+
+    /**
+     * Enables or disables {@link PhaseSpreader phase spreading} for the timer methods in this class.
+     */
+    public static void setSpreadPhases(boolean spreadPhases) {
+        ThreadUtil.spreadPhases = spreadPhases;
+    }
+
+    public static boolean isSpreadPhases() {
+        return spreadPhases;
+    }
+
+    /**
+     * Gets a ThreadUtil bound to another plugin. Its tasks are scheduled under
+     * that plugin instead of Runnables and are held to its {@link SchedulingQuota}.
+     * @param plugin The plugin to schedule tasks for.
+     * @return The plugin's instance.
+     */
+    public static PluginThreadUtil forPlugin(Plugin plugin) {
+        return PluginThreadUtil.of(plugin);
+    }
+
     /**
      * Runs a task on the same thread as an entity. On Spigot, this is the main
      * thread. On Folia, this is the thread that the entity is on.<br><br>
@@ -28,18 +66,23 @@ public class ThreadUtil {
      * @param runnable The task to run.
      */
     public static void ensureEntity(Entity entity, Runnable runnable) {
+        ensureEntity(Runnables.plugin, entity, runnable, null);
+    }
+
+    static void ensureEntity(Plugin plugin, Entity entity, Runnable runnable, Runnable retired) {
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ENTITY, entity, 0, -1);
         if (PaperRunnable.isFolia()) {
             if (Bukkit.isOwnedByCurrentRegion(entity) || Bukkit.isStopping()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
-            entity.getScheduler().execute(Runnables.plugin, runnable, null, 1L);
+            if (!entity.getScheduler().execute(plugin, tracked, retired, 1L) && retired != null) retired.run();
         } else {
             if (Bukkit.isPrimaryThread()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
-            Bukkit.getScheduler().runTask(Runnables.plugin, runnable);
+            Bukkit.getScheduler().runTask(plugin, tracked);
         }
     }
 
@@ -51,11 +94,16 @@ public class ThreadUtil {
      * @param delay The delay in ticks before running the task.
      */
     public static void ensureEntityDelay(Entity entity, Runnable runnable, long delay) {
+        ensureEntityDelay(Runnables.plugin, entity, runnable, delay, null);
+    }
+
+    static void ensureEntityDelay(Plugin plugin, Entity entity, Runnable runnable, long delay, Runnable retired) {
         delay = Math.max(1, delay);
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ENTITY, entity, delay, -1);
         if (PaperRunnable.isFolia()) {
-            entity.getScheduler().execute(Runnables.plugin, runnable, null, delay);
+            if (!entity.getScheduler().execute(plugin, tracked, retired, delay) && retired != null) retired.run();
         } else {
-            Bukkit.getScheduler().runTaskLater(Runnables.plugin, runnable, delay);
+            Bukkit.getScheduler().runTaskLater(plugin, tracked, delay);
         }
     }
 
@@ -68,11 +116,24 @@ public class ThreadUtil {
      * @param repeat The delay in ticks between each repeat of the task.
      */
     public static Object ensureEntityTimer(Entity entity, Runnable runnable, long delay, long repeat) {
+        return ensureEntityTimer(Runnables.plugin, entity, runnable, delay, repeat, null);
+    }
+
+    static Object ensureEntityTimer(Plugin plugin, Entity entity, Runnable runnable, long delay, long repeat, Runnable retired) {
         delay = Math.max(1, delay);
+        PhaseSpreader.Slot slot = spread(entity, delay, repeat);
+        if (slot != null) delay = slot.getDelay();
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ENTITY, entity, delay, repeat);
         if (PaperRunnable.isFolia()) {
-            return entity.getScheduler().runAtFixedRate(Runnables.plugin, (task) -> runnable.run(), null, delay, repeat);
+            Runnable onRetired = slot == null ? retired : retired == null ? slot::release : () -> {
+                slot.release();
+                retired.run();
+            };
+            return bindTimer(entity.getScheduler().runAtFixedRate(plugin, (task) -> tracked.run(), onRetired, delay, repeat),
+                    runnable, plugin, SchedulerType.ENTITY, entity, slot);
         } else {
-            return Bukkit.getScheduler().runTaskTimer(Runnables.plugin, runnable, delay, repeat);
+            return bindTimer(Bukkit.getScheduler().runTaskTimer(plugin, tracked, delay, repeat),
+                    runnable, plugin, SchedulerType.ENTITY, entity, slot);
         }
     }
 
@@ -83,19 +144,24 @@ public class ThreadUtil {
      * @param runnable The task to run.
      */
     public static void ensureLocation(Location location, Runnable runnable) {
+        ensureLocation(Runnables.plugin, location, runnable);
+    }
+
+    static void ensureLocation(Plugin plugin, Location location, Runnable runnable) {
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.REGION, location, 0, -1);
         if (PaperRunnable.isFolia()) {
             if (Bukkit.isOwnedByCurrentRegion(location) || Bukkit.isStopping()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
             RegionScheduler scheduler = Bukkit.getRegionScheduler();
-            scheduler.execute(Runnables.plugin, location, runnable);
+            scheduler.execute(plugin, location, tracked);
         } else {
             if (Bukkit.isPrimaryThread()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
-            Bukkit.getScheduler().runTask(Runnables.plugin, runnable);
+            Bukkit.getScheduler().runTask(plugin, tracked);
         }
     }
 
@@ -107,12 +173,17 @@ public class ThreadUtil {
      * @param delay The delay in ticks before running the task.
      */
     public static void ensureLocationDelay(@NotNull Location location, Runnable runnable, long delay) {
+        ensureLocationDelay(Runnables.plugin, location, runnable, delay);
+    }
+
+    static void ensureLocationDelay(Plugin plugin, @NotNull Location location, Runnable runnable, long delay) {
         delay = Math.max(1, delay);
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.REGION, location, delay, -1);
         if (PaperRunnable.isFolia()) {
             RegionScheduler scheduler = Bukkit.getRegionScheduler();
-            scheduler.runDelayed(Runnables.plugin, location, (task) -> runnable.run(), delay);
+            scheduler.runDelayed(plugin, location, (task) -> tracked.run(), delay);
         } else {
-            Bukkit.getScheduler().runTaskLater(Runnables.plugin, runnable, delay);
+            Bukkit.getScheduler().runTaskLater(plugin, tracked, delay);
         }
     }
 
@@ -128,12 +199,21 @@ public class ThreadUtil {
      * {@link org.bukkit.scheduler.BukkitTask} on Spigot.
      */
     public static Object ensureLocationTimer(Location location, Runnable runnable, long delay, long repeat) {
+        return ensureLocationTimer(Runnables.plugin, location, runnable, delay, repeat);
+    }
+
+    static Object ensureLocationTimer(Plugin plugin, Location location, Runnable runnable, long delay, long repeat) {
         delay = Math.max(1, delay);
+        PhaseSpreader.Slot slot = spread(location, delay, repeat);
+        if (slot != null) delay = slot.getDelay();
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.REGION, location, delay, repeat);
         if (PaperRunnable.isFolia()) {
             RegionScheduler scheduler = Bukkit.getRegionScheduler();
-            return scheduler.runAtFixedRate(Runnables.plugin, location, (task) -> runnable.run(), delay, repeat);
+            return bindTimer(scheduler.runAtFixedRate(plugin, location, (task) -> tracked.run(), delay, repeat),
+                    runnable, plugin, SchedulerType.REGION, location, slot);
         } else {
-            return Bukkit.getScheduler().runTaskLater(Runnables.plugin, runnable, delay);
+            return bindTimer(Bukkit.getScheduler().runTaskTimer(plugin, tracked, delay, repeat),
+                    runnable, plugin, SchedulerType.REGION, location, slot);
         }
     }
 
@@ -142,14 +222,19 @@ public class ThreadUtil {
      * @param runnable The task to run.
      */
     public static void runAsync(Runnable runnable) {
+        runAsync(Runnables.plugin, runnable);
+    }
+
+    static void runAsync(Plugin plugin, Runnable runnable) {
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ASYNC, null, 0, -1);
         if (PaperRunnable.isFolia()) {
             if (Bukkit.isStopping()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
-            Bukkit.getAsyncScheduler().runNow(Runnables.plugin, (task) -> runnable.run());
+            Bukkit.getAsyncScheduler().runNow(plugin, (task) -> tracked.run());
         } else {
-            Bukkit.getScheduler().runTaskAsynchronously(Runnables.plugin, runnable);
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, tracked);
         }
     }
 
@@ -159,11 +244,16 @@ public class ThreadUtil {
      * @param delay The delay in ticks before running the task.
      */
     public static void runAsyncLater(Runnable runnable, long delay) {
+        runAsyncLater(Runnables.plugin, runnable, delay);
+    }
+
+    static void runAsyncLater(Plugin plugin, Runnable runnable, long delay) {
         delay = Math.max(1, delay);
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ASYNC, null, delay, -1);
         if (PaperRunnable.isFolia()) {
-            Bukkit.getAsyncScheduler().runDelayed(Runnables.plugin, (task) -> runnable.run(), delay * 50, TimeUnit.MILLISECONDS);
+            Bukkit.getAsyncScheduler().runDelayed(plugin, (task) -> tracked.run(), delay * 50, TimeUnit.MILLISECONDS);
         } else {
-            Bukkit.getScheduler().runTaskLater(Runnables.plugin, runnable, delay);
+            Bukkit.getScheduler().runTaskLater(plugin, tracked, delay);
         }
     }
 
@@ -174,11 +264,20 @@ public class ThreadUtil {
      * @param repeat The delay in ticks between each repeat of the task.
      */
     public static Object runAsyncTimer(Runnable runnable, long delay, long repeat) {
+        return runAsyncTimer(Runnables.plugin, runnable, delay, repeat);
+    }
+
+    static Object runAsyncTimer(Plugin plugin, Runnable runnable, long delay, long repeat) {
         delay = Math.max(1, delay);
+        PhaseSpreader.Slot slot = spread(delay, repeat);
+        if (slot != null) delay = slot.getDelay();
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.ASYNC, null, delay, repeat);
         if (PaperRunnable.isFolia()) {
-            return Bukkit.getAsyncScheduler().runAtFixedRate(Runnables.plugin, (task) -> runnable.run(), delay * 50, repeat * 50, TimeUnit.MILLISECONDS);
+            return bindTimer(Bukkit.getAsyncScheduler().runAtFixedRate(plugin, (task) -> tracked.run(), delay * 50, repeat * 50, TimeUnit.MILLISECONDS),
+                    runnable, plugin, SchedulerType.ASYNC, null, slot);
         } else {
-            return Bukkit.getScheduler().runTaskTimerAsynchronously(Runnables.plugin, runnable, delay, repeat);
+            return bindTimer(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, tracked, delay, repeat),
+                    runnable, plugin, SchedulerType.ASYNC, null, slot);
         }
     }
 
@@ -188,14 +287,19 @@ public class ThreadUtil {
      * @param runnable The task to run.
      */
     public static void runSync(Runnable runnable) {
+        runSync(Runnables.plugin, runnable);
+    }
+
+    static void runSync(Plugin plugin, Runnable runnable) {
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.GLOBAL, null, 0, -1);
         if (PaperRunnable.isFolia()) {
             if (Bukkit.isStopping()) {
-                runnable.run();
+                tracked.run();
                 return;
             }
-            Bukkit.getGlobalRegionScheduler().run(Runnables.plugin, (task) -> runnable.run());
+            Bukkit.getGlobalRegionScheduler().run(plugin, (task) -> tracked.run());
         } else {
-            Bukkit.getScheduler().runTask(Runnables.plugin, runnable);
+            Bukkit.getScheduler().runTask(plugin, tracked);
         }
     }
 
@@ -209,11 +313,16 @@ public class ThreadUtil {
      * {@link org.bukkit.scheduler.BukkitTask} on Spigot.
      */
     public static Object runSyncLater(Runnable runnable, long delay) {
+        return runSyncLater(Runnables.plugin, runnable, delay);
+    }
+
+    static Object runSyncLater(Plugin plugin, Runnable runnable, long delay) {
         delay = Math.max(1, delay);
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.GLOBAL, null, delay, -1);
         if (PaperRunnable.isFolia()) {
-            return Bukkit.getGlobalRegionScheduler().runDelayed(Runnables.plugin, (task) -> runnable.run(), delay);
+            return Bukkit.getGlobalRegionScheduler().runDelayed(plugin, (task) -> tracked.run(), delay);
         } else {
-            return  Bukkit.getScheduler().runTaskLater(Runnables.plugin, runnable, delay);
+            return  Bukkit.getScheduler().runTaskLater(plugin, tracked, delay);
         }
     }
 
@@ -225,11 +334,20 @@ public class ThreadUtil {
      * @param repeat The delay in ticks between each repeat of the task.
      */
     public static Object runSyncTimer(Runnable runnable, long delay, long repeat) {
+        return runSyncTimer(Runnables.plugin, runnable, delay, repeat);
+    }
+
+    static Object runSyncTimer(Plugin plugin, Runnable runnable, long delay, long repeat) {
         delay = Math.max(1, delay);
+        PhaseSpreader.Slot slot = spread(delay, repeat);
+        if (slot != null) delay = slot.getDelay();
+        Runnable tracked = TaskEvents.track(runnable, plugin, SchedulerType.GLOBAL, null, delay, repeat);
         if (PaperRunnable.isFolia()) {
-            return Bukkit.getGlobalRegionScheduler().runAtFixedRate(Runnables.plugin, (task) -> runnable.run(), delay, repeat);
+            return bindTimer(Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, (task) -> tracked.run(), delay, repeat),
+                    runnable, plugin, SchedulerType.GLOBAL, null, slot);
         } else {
-            return Bukkit.getScheduler().runTaskTimer(Runnables.plugin, runnable, delay, repeat);
+            return bindTimer(Bukkit.getScheduler().runTaskTimer(plugin, tracked, delay, repeat),
+                    runnable, plugin, SchedulerType.GLOBAL, null, slot);
         }
     }
 
@@ -244,13 +362,18 @@ public class ThreadUtil {
     public static boolean cancelTimerTask(Object task) {
         if (task == null) return false;
 
+        Timer timer = timers.remove(task);
+        if (timer != null && timer.slot() != null) timer.slot().release();
+
         if (PaperRunnable.isFolia()) {
             if (task instanceof io.papermc.paper.threadedregions.scheduler.ScheduledTask) {
+                timerCancelled(timer, -1);
                 ((io.papermc.paper.threadedregions.scheduler.ScheduledTask) task).cancel();
                 return true;
             }
         } else {
             if (task instanceof org.bukkit.scheduler.BukkitTask) {
+                timerCancelled(timer, ((org.bukkit.scheduler.BukkitTask) task).getTaskId());
                 ((org.bukkit.scheduler.BukkitTask) task).cancel();
                 return true;
             }
@@ -274,4 +397,48 @@ public class ThreadUtil {
         }
         return false;
     }
+
+    private static PhaseSpreader.Slot spread(long delay, long repeat) {
+        return spreadPhases ? PhaseSpreader.reserve(null, delay, repeat) : null;
+    }
+
+    private static PhaseSpreader.Slot spread(Entity entity, long delay, long repeat) {
+        return spreadPhases ? PhaseSpreader.reserve(PhaseSpreader.regionOf(entity), delay, repeat) : null;
+    }
+
+    private static PhaseSpreader.Slot spread(Location location, long delay, long repeat) {
+        return spreadPhases ? PhaseSpreader.reserve(PhaseSpreader.regionOf(location), delay, repeat) : null;
+    }
+
+    /**
+     * Remembers a timer handle if it holds a phase slot or is being recorded.
+     */
+    private static Object bindTimer(Object task, Runnable runnable, Plugin plugin, SchedulerType type, Object target,
+                                    PhaseSpreader.Slot slot) {
+        if (task == null) {
+            if (slot != null) slot.release();
+            return null;
+        }
+        if (slot != null) bindSlot(slot, task);
+        if (slot != null || TaskEvents.isTracking()) {
+            timers.put(task, new Timer(runnable.getClass(), plugin, type, target, slot));
+        }
+        return task;
+    }
+
+    /**
+     * Binds a slot to its handle weakly. The slot is held by {@link #timers}
+     * under that same handle, so a strong reference would keep the weak key alive.
+     */
+    private static void bindSlot(PhaseSpreader.Slot slot, Object task) {
+        if (task instanceof org.bukkit.scheduler.BukkitTask bukkitTask) {
+            slot.bind(bukkitTask, org.bukkit.scheduler.BukkitTask::isCancelled);
+        } else if (task instanceof io.papermc.paper.threadedregions.scheduler.ScheduledTask scheduled) {
+            slot.bind(scheduled, io.papermc.paper.threadedregions.scheduler.ScheduledTask::isCancelled);
+        }
+    }
+
+    private static void timerCancelled(Timer timer, int taskId) {
+        if (timer != null) TaskEvents.cancelled(timer.taskClass(), timer.plugin(), timer.type(), timer.target(), taskId);
+    }
 }
\ No newline at end of file
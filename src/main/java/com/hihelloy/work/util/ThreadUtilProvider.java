@@ -0,0 +1,37 @@
+package com.hihelloy.work.util;
+
+import org.bukkit.plugin.Plugin;
+
+/**
+ * The service Runnables registers with Bukkit's {@link org.bukkit.plugin.ServicesManager}
+ * to hand out per-plugin {@link PluginThreadUtil} instances:
+ * <pre>{@code
+ * ThreadUtilProvider provider = Bukkit.getServicesManager().load(ThreadUtilProvider.class);
+ * PluginThreadUtil threads = provider.get(this, SchedulingQuota.of(5000, 4, 5, OverloadStrategy.DEFER));
+ * }</pre>
+ */
+public final class ThreadUtilProvider {
+
+    /**
+     * @return The instance for a plugin, created without limits if it does not exist yet.
+     */
+    public PluginThreadUtil get(Plugin plugin) {
+        return PluginThreadUtil.of(plugin);
+    }
+
+    /**
+     * @return The instance for a plugin with its quota set to {@code quota}.
+     */
+    public PluginThreadUtil get(Plugin plugin, SchedulingQuota quota) {
+        PluginThreadUtil threads = PluginThreadUtil.of(plugin);
+        threads.setQuota(quota);
+        return threads;
+    }
+
+    /**
+     * Forgets the instance for a plugin, for example when it is disabled.
+     */
+    public void release(Plugin plugin) {
+        PluginThreadUtil.release(plugin);
+    }
+}
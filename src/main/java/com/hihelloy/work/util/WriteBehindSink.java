@@ -0,0 +1,258 @@
+package com.hihelloy.work.util;
+
+import com.hihelloy.work.Runnables;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Collects small writes such as stat updates or log lines from game threads
+ * and hands them to an async writer in batches, instead of scheduling one
+ * async task and one database round trip per event.<br><br>
+ *
+ * Threads append to one of a fixed set of lock-free buffers picked by thread
+ * id, so region threads rarely contend with each other or with the writer. A
+ * batch is flushed on the async scheduler once {@code batchSize} items are
+ * pending, and any partial batch is flushed every {@code maxDelayTicks}. At
+ * most {@code maxInFlight} batches are written at once; past that, items stay
+ * buffered until a write finishes.<br><br>
+ *
+ * All sinks are flushed on the disabling thread when Runnables is disabled.
+ * @param <T> The type of item written.
+ */
+public final class WriteBehindSink<T> {
+
+    private static final List<WriteBehindSink<?>> sinks = new CopyOnWriteArrayList<>();
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long CLOSE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** A power of two at least twice the core count. */
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+
+    private final Consumer<List<T>> writer;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    private final Queue<Entry<T>>[] buffers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger writing = new AtomicInteger();
+    private final AtomicInteger appending = new AtomicInteger();
+    private final AtomicInteger rotor = new AtomicInteger();
+    private final Object timer;
+    private volatile boolean closed;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    private record Entry<T>(T item, long enqueuedAt) {
+    }
+
+    /**
+     * A snapshot of a sink's counters. Latency is measured from when the
+     * oldest item in a batch was appended until its write finished.
+     */
+    public record Metrics(long appended, long written, long failed, long batches, int pending, int inFlight,
+                          double averageLatencyMillis, double maxLatencyMillis, double lastLatencyMillis) {
+    }
+
+    /**
+     * Creates a sink that writes batches of up to 256 items at least once a
+     * second, with at most 2 batches in flight.
+     * @param writer Writes a batch. Runs on the async scheduler.
+     */
+    public WriteBehindSink(Consumer<List<T>> writer) {
+        this(writer, 256, 20L, 2);
+    }
+
+    /**
+     * Creates a sink.
+     * @param writer Writes a batch. Runs on the async scheduler.
+     * @param batchSize How many pending items trigger a flush, and the largest batch size.
+     * @param maxDelayTicks How often partial batches are flushed, in ticks.
+     * @param maxInFlight How many batches may be written at the same time.
+     */
+    public WriteBehindSink(Consumer<List<T>> writer, int batchSize, long maxDelayTicks, int maxInFlight) {
+        Objects.requireNonNull(writer, "writer");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        if (maxDelayTicks <= 0) throw new IllegalArgumentException("maxDelayTicks must be positive");
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive");
+
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.buffers = newBuffers();
+        this.timer = ThreadUtil.runAsyncTimer(() -> requestFlush(true), maxDelayTicks, maxDelayTicks);
+        sinks.add(this);
+    }
+
+    /**
+     * Appends an item to the calling thread's stripe. Never blocks.
+     * @param item The item to write.
+     */
+    public void append(T item) {
+        int pendingNow;
+        // Counted before the closed check so close() can wait for appends that passed it.
+        appending.incrementAndGet();
+        try {
+            if (closed) throw new IllegalStateException("This WriteBehindSink is closed");
+
+            buffers[(int) Thread.currentThread().threadId() & (STRIPES - 1)].offer(new Entry<>(item, System.nanoTime()));
+            appended.increment();
+            pendingNow = pending.incrementAndGet();
+        } finally {
+            appending.decrementAndGet();
+        }
+        if (pendingNow >= batchSize) requestFlush(false);
+    }
+
+    /**
+     * Flushes everything pending on the calling thread.
+     */
+    public void flush() {
+        List<Entry<T>> batch;
+        while (!(batch = take()).isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Stops the flush timer, waits for appends racing with the close to land,
+     * flushes everything pending on the calling thread and waits up to 5
+     * seconds in total for writes already in progress. The final flush does
+     * not count against the in-flight limit.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        sinks.remove(this);
+        ThreadUtil.cancelTimerTask(timer);
+
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        while (appending.get() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        flush();
+        while (writing.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(CLOSE_POLL_NANOS);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Metrics getMetrics() {
+        long count = batches.sum();
+        return new Metrics(appended.sum(), written.sum(), failed.sum(), count, pending.get(), inFlight.get(),
+                count == 0 ? 0 : totalLatencyNanos.sum() / 1e6 / count,
+                maxLatencyNanos.get() / 1e6,
+                lastLatencyNanos / 1e6);
+    }
+
+    /**
+     * Closes every open sink, flushing what they have pending. Called when
+     * Runnables is disabled.
+     */
+    public static void closeAll() {
+        for (WriteBehindSink<?> sink : sinks) {
+            sink.close();
+        }
+    }
+
+
+    /**
+     * Starts an async flush if there is enough pending and a free write slot.
+     * @param partial Whether to flush even when less than a full batch is pending.
+     */
+    private void requestFlush(boolean partial) {
+        while (!closed) {
+            int pendingNow = pending.get();
+            if (pendingNow <= 0 || (!partial && pendingNow < batchSize)) return;
+
+            int current = inFlight.get();
+            if (current >= maxInFlight) return;
+            if (inFlight.compareAndSet(current, current + 1)) {
+                ThreadUtil.runAsync(this::flushOne);
+                return;
+            }
+        }
+    }
+
+    private void flushOne() {
+        writing.incrementAndGet();
+        try {
+            List<Entry<T>> batch = take();
+            if (!batch.isEmpty()) write(batch);
+        } finally {
+            writing.decrementAndGet();
+            inFlight.decrementAndGet();
+        }
+        // A write slot just freed up, keep going while full batches are waiting.
+        requestFlush(false);
+    }
+
+    private List<Entry<T>> take() {
+        List<Entry<T>> batch = new ArrayList<>(Math.min(batchSize, Math.max(pending.get(), 1)));
+        int start = rotor.getAndIncrement();
+
+        for (int i = 0; i < STRIPES && batch.size() < batchSize; i++) {
+            Queue<Entry<T>> buffer = buffers[(start + i) & (STRIPES - 1)];
+            Entry<T> entry;
+            while (batch.size() < batchSize && (entry = buffer.poll()) != null) {
+                batch.add(entry);
+            }
+        }
+        if (!batch.isEmpty()) pending.addAndGet(-batch.size());
+        return batch;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Queue<Entry<T>>[] newBuffers() {
+        Queue<Entry<T>>[] buffers = new Queue[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            buffers[i] = new ConcurrentLinkedQueue<>();
+        }
+        return buffers;
+    }
+
+    private void write(List<Entry<T>> batch) {
+        long oldest = Long.MAX_VALUE;
+        List<T> items = new ArrayList<>(batch.size());
+        for (Entry<T> entry : batch) {
+            items.add(entry.item());
+            oldest = Math.min(oldest, entry.enqueuedAt());
+        }
+
+        try {
+            writer.accept(items);
+            written.add(items.size());
+        } catch (Throwable t) {
+            failed.add(items.size());
+            if (Runnables.plugin != null) {
+                Runnables.plugin.getLogger().log(Level.WARNING, "WriteBehindSink failed to write a batch of " + items.size(), t);
+            }
+        }
+
+        long latency = System.nanoTime() - oldest;
+        batches.increment();
+        totalLatencyNanos.add(latency);
+        lastLatencyNanos = latency;
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+}
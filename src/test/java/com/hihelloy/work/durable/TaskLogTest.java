@@ -0,0 +1,255 @@
+package com.hihelloy.work.durable;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskLogTest {
+
+    private static final byte[] TYPE = "type".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenKeepsAppendedTasks() throws IOException {
+        long first;
+        long last;
+        try (TaskLog log = TaskLog.open(dir)) {
+            first = schedule(log, "a", 300);
+            schedule(log, "b", 100);
+            last = schedule(log, "c", 200);
+        }
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertEquals(3, log.getLiveCount());
+            assertEquals(List.of("b", "c", "a"), payloads(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE)));
+            long next = schedule(log, "d", 400);
+            assertTrue(next > last && last > first);
+        }
+    }
+
+    @Test
+    void tombstonesSurviveReopen() throws IOException {
+        long cancelled;
+        try (TaskLog log = TaskLog.open(dir)) {
+            schedule(log, "a", 100);
+            cancelled = schedule(log, "b", 200);
+            schedule(log, "c", 300);
+
+            assertTrue(log.finish(cancelled));
+            int end = log.getLogEnd();
+            assertFalse(log.finish(cancelled));
+            assertFalse(log.finish(12345));
+            assertEquals(end, log.getLogEnd(), "finishing a dead id must not write a tombstone");
+        }
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertEquals(2, log.getLiveCount());
+            assertEquals(1, log.getDeadCount());
+            assertFalse(log.isLive(cancelled));
+            assertEquals(List.of("a", "c"), payloads(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void mergeFoldsTailIntoRun() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (TaskLog log = TaskLog.open(dir)) {
+            for (int i = 0; i < 10; i++) ids.add(schedule(log, "t" + i, (i * 7L) % 10 * 100));
+            log.finish(ids.get(0));
+            log.finish(ids.get(5));
+            log.merge();
+
+            Path index = log.getIndexPath();
+            assertTrue(log.isRunValid());
+            assertEquals(8, log.getRunCount());
+            assertEquals(0, log.getTailSchedules());
+
+            schedule(log, "tail", 250);
+            log.merge();
+            assertNotEquals(index, log.getIndexPath(), "a merge must write a new file instead of replacing the mapped one");
+            assertFalse(Files.exists(index));
+            assertEquals(9, log.getRunCount());
+
+            schedule(log, "tail2", 350);
+            assertEquals(List.of("t6", "tail", "t9", "tail2"), payloads(liveDue(log, 200, 400)));
+        }
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertTrue(log.isRunValid());
+            assertEquals(9, log.getRunCount());
+            assertEquals(1, log.getTailSchedules());
+            assertEquals(List.of("t6", "tail", "t9", "tail2"), payloads(liveDue(log, 200, 400)));
+        }
+    }
+
+    @Test
+    void compactionCarriesOverConcurrentAppends() throws IOException {
+        Set<Long> expected = new TreeSet<>();
+        List<Long> appended = new ArrayList<>();
+        Path oldLog;
+        int logEnd;
+        try (TaskLog log = TaskLog.open(dir)) {
+            for (int i = 0; i < 100; i++) {
+                long id = schedule(log, "t" + i, i);
+                if (i % 5 == 0) {
+                    expected.add(id);
+                } else {
+                    log.finish(id);
+                }
+            }
+            long cancelledDuringCopy = expected.iterator().next();
+            oldLog = log.getLogPath();
+
+            log.compact(() -> {
+                try {
+                    appended.add(schedule(log, "during", 1000));
+                    appended.add(schedule(log, "during", 1001));
+                    log.finish(cancelledDuringCopy);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            expected.remove(cancelledDuringCopy);
+            expected.addAll(appended);
+
+            assertNotEquals(oldLog, log.getLogPath());
+            assertFalse(Files.exists(oldLog));
+            assertEquals(expected.size(), log.getLiveCount());
+            assertEquals(1, log.getDeadCount(), "only the tombstone written during the copy is left");
+            assertEquals(2, log.getTailSchedules());
+            assertEquals(expected, ids(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE)));
+
+            long next = schedule(log, "after", 2000);
+            assertTrue(next > appended.get(1));
+            expected.add(next);
+            logEnd = log.getLogEnd();
+        }
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertEquals(logEnd, log.getLogEnd(), "the end set after compaction must match the one found by scanning");
+            assertTrue(log.isRunValid());
+            assertEquals(expected, ids(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE)));
+            assertTrue(schedule(log, "reopened", 3000) > expected.stream().mapToLong(Long::longValue).max().orElseThrow());
+        }
+    }
+
+    @Test
+    void failedCompactionLeavesLogUsable() throws IOException {
+        try (TaskLog log = TaskLog.open(dir)) {
+            long kept = schedule(log, "kept", 100);
+            log.finish(schedule(log, "dropped", 200));
+            Path logFile = log.getLogPath();
+
+            assertThrows(IllegalStateException.class, () -> log.compact(() -> {
+                throw new IllegalStateException("interrupted");
+            }));
+
+            assertEquals(logFile, log.getLogPath());
+            try (var files = Files.list(dir)) {
+                assertEquals(List.of(logFile), files.filter(file -> file.toString().endsWith(".log")).toList());
+            }
+            long added = schedule(log, "added", 300);
+            assertTrue(log.finish(kept));
+            assertEquals(List.of(added), List.copyOf(ids(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE))));
+        }
+    }
+
+    @Test
+    void indexFromAnotherGenerationIsRebuilt() throws IOException {
+        Path staleIndex = dir.resolve("stale.idx");
+        Path logFile;
+        try (TaskLog log = TaskLog.open(dir)) {
+            for (int i = 0; i < 20; i++) {
+                long id = schedule(log, "t" + i, i);
+                if (i % 2 == 0) log.finish(id);
+            }
+            log.merge();
+            Files.copy(log.getIndexPath(), staleIndex);
+            log.compact();
+            logFile = log.getLogPath();
+        }
+
+        // A crash between switching the log and switching the index, as the
+        // old two-rename layout could leave behind.
+        Files.deleteIfExists(dir.resolve("tasks.manifest"));
+        Files.move(logFile, dir.resolve("tasks.log"));
+        Files.move(staleIndex, dir.resolve("tasks.idx"));
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertFalse(log.isRunValid());
+            assertFalse(Files.exists(dir.resolve("tasks.idx")));
+            assertEquals(10, log.getLiveCount());
+            assertEquals(10, liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE).size());
+            assertTrue(log.shouldMerge());
+
+            log.maintain();
+            assertTrue(log.isRunValid());
+            assertEquals(10, log.getRunCount());
+        }
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertTrue(log.isRunValid());
+            assertEquals(10, liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void filesLeftByInterruptedMaintenanceAreDeleted() throws IOException {
+        try (TaskLog log = TaskLog.open(dir)) {
+            schedule(log, "a", 100);
+        }
+        Path strayLog = Files.writeString(dir.resolve("tasks-1.log"), "partial");
+        Path strayIndex = Files.writeString(dir.resolve("tasks-1-0.idx"), "partial");
+        Path strayManifest = Files.writeString(dir.resolve("tasks.manifest.tmp"), "partial");
+
+        try (TaskLog log = TaskLog.open(dir)) {
+            assertFalse(Files.exists(strayLog));
+            assertFalse(Files.exists(strayIndex));
+            assertFalse(Files.exists(strayManifest));
+            assertEquals(List.of("a"), payloads(liveDue(log, Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+    }
+
+
+    private static long schedule(TaskLog log, String payload, long dueAt) throws IOException {
+        return log.schedule(TYPE, payload.getBytes(StandardCharsets.UTF_8), dueAt);
+    }
+
+    /**
+     * Reads due tasks the way {@link DurableTaskStore} does, keeping only live ones.
+     */
+    private static List<TaskDescriptor> liveDue(TaskLog log, long from, long until) {
+        TaskLog.Snapshot snapshot = log.snapshot();
+        List<TaskDescriptor> found = log.due(snapshot, from, until);
+        log.dueSince(snapshot, from, until, found);
+        found.removeIf(descriptor -> !log.isLive(descriptor.id()));
+        found.sort((a, b) -> Long.compare(a.dueAt(), b.dueAt()));
+        return found;
+    }
+
+    private static List<String> payloads(List<TaskDescriptor> descriptors) {
+        return descriptors.stream().map(TaskDescriptor::payloadAsString).toList();
+    }
+
+    private static Set<Long> ids(List<TaskDescriptor> descriptors) {
+        Set<Long> ids = new TreeSet<>();
+        for (TaskDescriptor descriptor : descriptors) ids.add(descriptor.id());
+        return ids;
+    }
+}